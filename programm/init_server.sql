@@ -45,6 +45,34 @@ CREATE TABLE IF NOT EXISTS tickets
     FOREIGN KEY (user_id) REFERENCES users (id)
     );
 
+-- Выборка и удаление элементов одного владельца или одного типа
+CREATE INDEX IF NOT EXISTS tickets_user_id_idx ON tickets (user_id);
+CREATE INDEX IF NOT EXISTS tickets_type_id_idx ON tickets (type_id);
+-- Удаление по диапазону цены
+CREATE INDEX IF NOT EXISTS tickets_price_idx ON tickets (price);
+-- Триггер удаляет координаты и мероприятие каждого удалённого элемента; без этих индексов
+-- проверка внешних ключей просматривает всю таблицу tickets на каждую строку
+CREATE INDEX IF NOT EXISTS tickets_coordinates_id_idx ON tickets (coordinates_id);
+CREATE INDEX IF NOT EXISTS tickets_event_id_idx ON tickets (event_id);
+
+-- Номер последнего изменения строки: по нему сервер догружает изменения, сделанные после сохранения снимка коллекции
+CREATE SEQUENCE IF NOT EXISTS tickets_change_seq;
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('tickets_change_seq');
+CREATE INDEX IF NOT EXISTS tickets_change_seq_idx ON tickets (change_seq);
+
+CREATE OR REPLACE FUNCTION next_change_seq()
+    RETURNS TRIGGER AS $$
+BEGIN
+NEW.change_seq = nextval('tickets_change_seq');
+RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tickets_change_seq_update
+    BEFORE UPDATE ON tickets
+    FOR EACH ROW
+    EXECUTE FUNCTION next_change_seq();
+
 CREATE OR REPLACE FUNCTION delete_related_records()
     RETURNS TRIGGER AS $$
 BEGIN
@@ -19,9 +19,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.FileNotFoundException;
+import java.net.ProtocolException;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 //Вариант 4555
 public final class Client {
@@ -30,6 +35,10 @@ public final class Client {
     private static final String SERVER_HOST = "localhost";
     private static Map<String, Pair<ArgumentValidator, Boolean>> commandsData;
     private static final NetworkManager networkManager = new NetworkManager(SERVER_PORT, SERVER_HOST);
+    private static final int SCRIPT_PIPELINE_DEPTH = 32; // Сколько команд скрипта отправляется, не дожидаясь ответов
+    // Команды, которые не изменяют данные: только их скрипт отправляет, не дожидаясь ответов на предыдущие
+    private static final Set<String> READ_ONLY_COMMANDS = Set.of("help", "info", "show", "show_user_list",
+            "print_field_ascending_description", "print_field_descending_description");
     private static int scriptStackCounter = 0;
     private static int attempts = 1;
     public static Pair<String, String> user;
@@ -59,8 +68,14 @@ public final class Client {
                             continue; // Прерываем выполнение команды, если клиент не ввёл элемент коллекции
                         }
 
-                        networkManager.send(request);
-                        Response response = networkManager.receive();
+                        // Большой ответ приходит частями, и каждая часть выводится сразу, не дожидаясь остальных
+                        Response response = networkManager.send(request,
+                                chunk -> chunk.getExecutionStatus().getCollection().forEach(item -> console.println(item.toString())));
+                        if (response.isSessionExpired()) { // Сервер забыл сессию: входим заново и повторяем команду
+                            AuthenticationManager.sendAuthenticationRequest(networkManager, console, user, "login");
+                            response = networkManager.send(withSession(request),
+                                    chunk -> chunk.getExecutionStatus().getCollection().forEach(item -> console.println(item.toString())));
+                        }
                         if (response.getExecutionStatus().isSuccess()) {
                             if (response.getExecutionStatus().getMessage() == null) {
                                 response.getExecutionStatus().getCollection().forEach(item -> console.println(item.toString()));
@@ -73,14 +88,14 @@ public final class Client {
                         }
                     }
                 }
+            } catch (ProtocolException e) {
+                console.printError("Ошибка при работе с сервером: " + e.getMessage());
             } catch (BufferOverflowException | BufferUnderflowException | IOException e) {
                 console.printError("Не удалось подключиться к серверу. Проверьте, запущен ли сервер и доступен ли он по адресу " + SERVER_HOST + ":" + SERVER_PORT);
                 try {
                     Thread.sleep(2000);
                     attempts++;
                 } catch (InterruptedException ignored) {}
-            } catch (ClassNotFoundException e) {
-                console.printError("Ошибка при работе с сервером: " + e.getMessage());
             }
         } while (attempts <= 5);
         console.printError("Превышено максимальное количество попыток подключения к серверу.");
@@ -93,7 +108,7 @@ public final class Client {
             console.printError(validationStatusPair.getFirst().getMessage());
             return null;
         } else {
-            return new Request(inputCommand, validationStatusPair.getSecond(), user);
+            return withSession(new Request(inputCommand, validationStatusPair.getSecond(), user));
         }
     }
 
@@ -135,10 +150,24 @@ public final class Client {
             }
             return null;
         } else {
-            return new Request(inputCommand, user);
+            return withSession(new Request(inputCommand, user));
         }
     }
 
+    /**
+     * Переводит запрос на текущую сессию: вместо логина и пароля передаётся токен, выданный при входе.
+     * Если сессии нет, запрос остаётся с логином и паролем.
+     */
+    private static Request withSession(Request request) {
+        String sessionToken = networkManager.getSessionToken();
+        if (sessionToken == null) {
+            return request;
+        }
+        Request sessionRequest = new Request(request.getCommandLine(), request.getTicket(), null);
+        sessionRequest.setSessionToken(sessionToken);
+        return sessionRequest;
+    }
+
     private static ExecutionStatus runScript(String fileName) {
         scriptStackCounter++;
         if (scriptStackCounter > 5) {
@@ -150,35 +179,30 @@ public final class Client {
             return new ExecutionStatus(false, "У команды execute_script должен быть ровно один аргумент!\nПример корректного ввода: execute_script file_name");
         }
         console.println("Запуск скрипта '" + fileName + "'");
+        Deque<CompletableFuture<Response>> inFlight = new ArrayDeque<>(); // Отправленные, но ещё не выведенные команды
         try (BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)))) {
             Console FileConsole = new FileConsole(input);
             while (scriptStackCounter > 0) {
                 String line = input.readLine();
-                if (line == null) {return new ExecutionStatus(true, "Скрипт успешно выполнен.");}
-                if (!line.equals("exit")) {
-
-                    Request request = prepareRequest(FileConsole, line);
-                    if (request == null) {
-                        return new ExecutionStatus(false, "Выполнение скрипта остановлено");
-                    }
-                    networkManager.send(request);
-                    Response response = networkManager.receive();
-                    ExecutionStatus commandStatus = response.getExecutionStatus();
-
-                    if (response.getExecutionStatus().isSuccess()) {
-                        if (response.getExecutionStatus().getMessage() == null) {
-                            response.getExecutionStatus().getCollection().forEach(item -> console.println(item.toString()));
-                        } else {
-                            console.println(response.getExecutionStatus().getMessage());
-                        }
-                    } else {
-                        if (!commandStatus.getMessage().equals("Выполнение скрипта остановлено")) {
-                            console.printError(commandStatus.getMessage());
-                        }
-                        return new ExecutionStatus(false, "Выполнение скрипта остановлено");
-                    }
-                } else {
-                    return new ExecutionStatus(true, "Скрипт успешно выполнен.");
+                if (line == null || line.equals("exit")) {
+                    return awaitScriptResponses(inFlight, 0)
+                            ? new ExecutionStatus(true, "Скрипт успешно выполнен.")
+                            : new ExecutionStatus(false, "Выполнение скрипта остановлено");
+                }
+                if (line.trim().startsWith("execute_script") && !awaitScriptResponses(inFlight, 0)) {
+                    return new ExecutionStatus(false, "Выполнение скрипта остановлено"); // Вложенный скрипт выводит результаты после текущих
+                }
+                Request request = prepareRequest(FileConsole, line);
+                if (request == null) {
+                    awaitScriptResponses(inFlight, 0);
+                    return new ExecutionStatus(false, "Выполнение скрипта остановлено");
+                }
+                if (!isReadOnly(request) && !awaitScriptResponses(inFlight, 0)) {
+                    return new ExecutionStatus(false, "Выполнение скрипта остановлено"); // Изменение отправляется только после успеха всех предыдущих команд
+                }
+                inFlight.add(networkManager.sendAsync(request)); // Не ждём ответа, чтобы не терять время на каждую команду
+                if (!awaitScriptResponses(inFlight, SCRIPT_PIPELINE_DEPTH - 1)) {
+                    return new ExecutionStatus(false, "Выполнение скрипта остановлено");
                 }
             }
         } catch (FileNotFoundException e) {
@@ -192,4 +216,34 @@ public final class Client {
         }
         return new ExecutionStatus(true, "");
     }
+
+    private static boolean isReadOnly(Request request) {
+        return READ_ONLY_COMMANDS.contains(request.getCommand()[0]);
+    }
+
+    /**
+     * Выводит ответы на команды скрипта в порядке отправки, пока в пути не останется не больше limit команд.
+     * В пути вместе с ошибочной командой могут быть только команды чтения, поэтому после ошибки коллекция не меняется.
+     *
+     * @return false, если одна из команд завершилась ошибкой
+     */
+    private static boolean awaitScriptResponses(Deque<CompletableFuture<Response>> inFlight, int limit) {
+        while (inFlight.size() > limit) {
+            ExecutionStatus commandStatus = inFlight.poll().join().getExecutionStatus();
+            if (commandStatus.isSuccess()) {
+                if (commandStatus.getMessage() == null) {
+                    commandStatus.getCollection().forEach(item -> console.println(item.toString()));
+                } else {
+                    console.println(commandStatus.getMessage());
+                }
+            } else {
+                if (!commandStatus.getMessage().equals("Выполнение скрипта остановлено")) {
+                    console.printError(commandStatus.getMessage());
+                }
+                inFlight.clear();
+                return false;
+            }
+        }
+        return true;
+    }
 }
\ No newline at end of file
@@ -8,11 +8,11 @@ import com.lab7.common.utility.Response;
 import java.io.IOException;
 
 public class AuthenticationManager {
-    public static Pair<String, String> sendAuthenticationRequest(NetworkManager networkManager, Console console, Pair<String, String> user, String inputCommand) throws IOException, ClassNotFoundException {
+    public static Pair<String, String> sendAuthenticationRequest(NetworkManager networkManager, Console console, Pair<String, String> user, String inputCommand) throws IOException {
         Request request = new Request(inputCommand, user);
-        networkManager.send(request);
-        Response authResponse = networkManager.receive();
+        Response authResponse = networkManager.send(request);
         if (authResponse.getExecutionStatus().isSuccess()) {
+            networkManager.setSessionToken(authResponse.getSessionToken()); // Дальше пароль не передаётся
             console.println(authResponse.getExecutionStatus().getMessage());
             return user;
         } else {
@@ -21,7 +21,7 @@ public class AuthenticationManager {
         }
     }
 
-    public static Pair<String, String> authenticateUser(NetworkManager networkManager, Console console) throws IOException, ClassNotFoundException {
+    public static Pair<String, String> authenticateUser(NetworkManager networkManager, Console console) throws IOException {
         while (true) {
             console.println("Введите команду 'register' для регистрации или 'login' для авторизации:");
             String inputCommand = console.readln().trim().toLowerCase();
@@ -1,33 +1,69 @@
 package com.lab7.client.managers;
 
+import com.lab7.common.models.Ticket;
+import com.lab7.common.utility.ClientHello;
+import com.lab7.common.utility.ExecutionStatus;
+import com.lab7.common.utility.Frame;
+import com.lab7.common.utility.MessageCodec;
 import com.lab7.common.utility.Request;
 import com.lab7.common.utility.Response;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class NetworkManager {
+    private static final int MAX_FRAME_SIZE = 1 << 24; // Длинные ответы сервер присылает частями, поэтому кадр больше этого - ошибка
     private final int PORT;
     private final String SERVER_HOST;
     private SocketChannel channel;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, PendingRequest> pendingResponses = new ConcurrentHashMap<>();
+    private Thread responseReader;
+    private final Path commandsCache; // Сохранённый список команд сервера, чтобы не загружать его при каждом подключении
+    private volatile String sessionToken; // Токен, выданный сервером при входе
 
     public NetworkManager(int port, String host) {
         this.PORT = port;
         this.SERVER_HOST = host;
+        this.commandsCache = Path.of(System.getProperty("user.home"), ".lab7", "commands-" + host + "-" + port + ".bin");
     }
 
 
     public void connect() throws IOException {
         channel = SocketChannel.open();
         channel.connect(new InetSocketAddress(InetAddress.getByName(SERVER_HOST), PORT));
+        responseReader = null; // Поток чтения ответов запускается заново для каждого соединения
+        String commandsHash = null;
+        if (Files.isReadable(commandsCache)) {
+            commandsHash = MessageCodec.digest(ByteBuffer.wrap(Files.readAllBytes(commandsCache)));
+        }
+        // Сервер ответит списком команд или подтвердит, что сохранённый список актуален
+        ByteBuffer hello = MessageCodec.encodeHello(new ClientHello(true, commandsHash));
+        while (hello.hasRemaining()) {
+            channel.write(hello);
+        }
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
     }
 
     public void close() throws IOException {
@@ -35,35 +71,162 @@ public class NetworkManager {
             channel.close();
         }
     }
-    public void send(Request request) throws IOException {
-        try(ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(bytes)) {
-
-            out.writeObject(request);
-            ByteBuffer dataToSend = ByteBuffer.wrap(bytes.toByteArray());
-            channel.write(dataToSend); // отправляем серверу запрос
-            out.flush();
+
+    /**
+     * Отправляет запрос, не дожидаясь ответа. Можно отправить несколько запросов подряд:
+     * сервер вернёт ответы с теми же идентификаторами, возможно в другом порядке.
+     * Если ответ пришёл несколькими частями, будущий ответ содержит их все.
+     *
+     * @param request запрос
+     * @return будущий ответ на этот запрос
+     * @throws IOException если не удалось отправить запрос
+     */
+    public CompletableFuture<Response> sendAsync(Request request) throws IOException {
+        return sendAsync(request, null);
+    }
+
+    /**
+     * Отправляет запрос, не дожидаясь ответа, и передаёт промежуточные части ответа слушателю по мере получения.
+     * Будущий ответ содержит только последнюю часть.
+     *
+     * @param request запрос
+     * @param chunkListener получатель промежуточных частей; вызывается из потока чтения ответов
+     * @return будущий последний ответ на этот запрос
+     * @throws IOException если не удалось отправить запрос
+     */
+    public synchronized CompletableFuture<Response> sendAsync(Request request, Consumer<Response> chunkListener) throws IOException {
+        request.setId(nextRequestId.incrementAndGet());
+        PendingRequest pendingRequest = new PendingRequest(chunkListener);
+        CompletableFuture<Response> responseFuture = pendingRequest.future;
+        pendingResponses.put(request.getId(), pendingRequest);
+        if (responseReader == null) {
+            startResponseReader();
         }
+        ByteBuffer frame = MessageCodec.encodeRequest(request);
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame); // отправляем серверу запрос вместе с заголовком длины
+            }
+        } catch (IOException e) {
+            pendingResponses.remove(request.getId());
+            throw e;
+        }
+        return responseFuture;
+    }
+
+    /**
+     * Отправляет запрос и ждёт ответа на него.
+     *
+     * @param request запрос
+     * @return ответ сервера
+     * @throws IOException если соединение с сервером потеряно
+     */
+    public Response send(Request request) throws IOException {
+        return send(request, null);
     }
-    public Response receive() throws IOException, ClassNotFoundException, BufferUnderflowException {
-        ByteBuffer dataToReceiveLength = ByteBuffer.allocate(8);
-        channel.read(dataToReceiveLength); // читаем длину ответа от сервера
-        dataToReceiveLength.flip(); // переводим в режим чтения
-        int responseLength = dataToReceiveLength.getInt(); // достаём её из буфера
-
-        ByteBuffer responseBytes = ByteBuffer.allocate(responseLength); // создаем буфер для ответа от сервера
-        ByteBuffer packetFromServer = ByteBuffer.allocate(256);
-
-        while (true){
-            channel.read(packetFromServer);
-            if (packetFromServer.position() == 2 && packetFromServer.get(0) == 69 && packetFromServer.get(1) == 69) break;
-            packetFromServer.flip(); // переводим в режим чтения
-            responseBytes.put(packetFromServer);
-            packetFromServer.clear();
+
+    /**
+     * Отправляет запрос и ждёт ответа на него, передавая промежуточные части слушателю.
+     *
+     * @param request запрос
+     * @param chunkListener получатель промежуточных частей ответа
+     * @return последняя часть ответа сервера
+     * @throws IOException если соединение с сервером потеряно
+     */
+    public Response send(Request request, Consumer<Response> chunkListener) throws IOException {
+        try {
+            return sendAsync(request, chunkListener).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Читает одно сообщение сервера напрямую из канала.
+     * Используется только для ответа на приветствие со списком команд, до отправки первого запроса.
+     * Новый список команд сохраняется на диск; если сервер подтвердил сохранённый список, он читается с диска.
+     */
+    public Response receive() throws IOException, BufferUnderflowException {
+        byte[] responseBytes = Frame.read(channel, MAX_FRAME_SIZE); // читаем кадр: заголовок с длиной и сам ответ
+        Response response = MessageCodec.decodeResponse(ByteBuffer.wrap(responseBytes));
+        if (response.isCommandsUnchanged()) {
+            if (!Files.isReadable(commandsCache)) {
+                throw new ProtocolException("Сервер сослался на сохранённый список команд, но его нет");
+            }
+            return MessageCodec.decodeResponse(ByteBuffer.wrap(Files.readAllBytes(commandsCache)));
+        }
+        if (response.getCommandsMap() != null) {
+            try {
+                Files.createDirectories(commandsCache.getParent());
+                Files.write(commandsCache, responseBytes);
+            } catch (IOException ignored) {} // Без сохранённой копии список просто загрузится в следующий раз
+        }
+        return response;
+    }
+
+    private void startResponseReader() {
+        SocketChannel readerChannel = channel;
+        responseReader = new Thread(() -> {
+            try {
+                while (true) {
+                    Response response = MessageCodec.decodeResponse(ByteBuffer.wrap(Frame.read(readerChannel, MAX_FRAME_SIZE)));
+                    PendingRequest pendingRequest = response.isPartial()
+                            ? pendingResponses.get(response.getRequestId())
+                            : pendingResponses.remove(response.getRequestId());
+                    if (pendingRequest == null) {
+                        throw new ProtocolException("Получен ответ на неизвестный запрос " + response.getRequestId());
+                    }
+                    pendingRequest.accept(response);
+                }
+            } catch (IOException e) {
+                try {
+                    readerChannel.close(); // Последующие запросы сразу получат ошибку записи
+                } catch (IOException ignored) {}
+                pendingResponses.values().forEach(pendingRequest -> pendingRequest.future.completeExceptionally(e));
+                pendingResponses.clear();
+            }
+        }, "response-reader");
+        responseReader.setDaemon(true);
+        responseReader.start();
+    }
+
+    /**
+     * Ожидаемый ответ: будущий результат и, если ответ приходит частями, способ обработки промежуточных частей.
+     */
+    private static class PendingRequest {
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+        private final Consumer<Response> chunkListener;
+        private Stack<Ticket> received; // Накопленные части, если слушатель не задан
+
+        private PendingRequest(Consumer<Response> chunkListener) {
+            this.chunkListener = chunkListener;
         }
 
-        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(responseBytes.array()))){
-            return (Response) in.readObject();
+        private void accept(Response response) {
+            if (response.isPartial()) {
+                if (chunkListener != null) {
+                    chunkListener.accept(response);
+                } else {
+                    if (received == null) {
+                        received = new Stack<>();
+                    }
+                    received.addAll(response.getExecutionStatus().getCollection());
+                }
+                return;
+            }
+            if (received != null && response.getExecutionStatus().getCollection() != null) {
+                received.addAll(response.getExecutionStatus().getCollection());
+                Response merged = new Response(new ExecutionStatus(response.getExecutionStatus().isSuccess(), received));
+                merged.setRequestId(response.getRequestId());
+                response = merged;
+            }
+            future.complete(response);
         }
     }
-}
\ No newline at end of file
+}
@@ -200,7 +200,7 @@ public class Ticket extends Element implements Serializable {
         if (name == null || name.isEmpty()) return false;
         if (coordinates == null || !coordinates.validate()) return false;
         if (creationDate == null) return false;
-        if (price <= 0) return false;
+        if (price == null || price <= 0) return false;
         if (description == null) return false;
         if (user == null) return false;
         return event != null && event.validate();
@@ -59,7 +59,23 @@ public class TicketBuilder {
     }
 
     public Ticket build() {
-        Ticket band = new Ticket(
+        Ticket band = buildUnchecked();
+        if (band.validate()){
+            return band;
+        }
+        else {
+            throw new IllegalArgumentException("Некорректные данные для создания объекта Ticket");
+        }
+    }
+
+    /**
+     * Создаёт объект Ticket без проверки значений полей.
+     * Используется при декодировании сообщений: проверка элемента остаётся за командой, которая его получает.
+     *
+     * @return объект Ticket, возможно невалидный
+     */
+    public Ticket buildUnchecked() {
+        return new Ticket(
                 id,
                 name,
                 coordinates,
@@ -67,11 +83,5 @@ public class TicketBuilder {
                 description, type, event,
                 user
         );
-        if (band.validate()){
-            return band;
-        }
-        else {
-            throw new IllegalArgumentException("Некорректные данные для создания объекта Ticket");
-        }
     }
 }
\ No newline at end of file
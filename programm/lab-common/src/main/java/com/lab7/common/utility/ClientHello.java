@@ -0,0 +1,43 @@
+package com.lab7.common.utility;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Приветствие клиента - первое сообщение после подключения.
+ * Сообщает серверу возможности клиента и хэш сохранённого списка команд;
+ * в ответ сервер присылает список команд или подтверждает, что сохранённый список актуален.
+ */
+public class ClientHello implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 14L;
+    private final boolean compressionSupported;
+    private final String commandsHash;
+
+    /**
+     * Конструктор приветствия.
+     *
+     * @param compressionSupported true, если клиент умеет распаковывать сжатые кадры
+     * @param commandsHash хэш сохранённого у клиента списка команд или null, если списка нет
+     */
+    public ClientHello(boolean compressionSupported, String commandsHash) {
+        this.compressionSupported = compressionSupported;
+        this.commandsHash = commandsHash;
+    }
+
+    public boolean isCompressionSupported() {
+        return compressionSupported;
+    }
+
+    public String getCommandsHash() {
+        return commandsHash;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientHello{" +
+                "compressionSupported=" + compressionSupported +
+                ", commandsHash='" + commandsHash + '\'' +
+                '}';
+    }
+}
@@ -4,7 +4,7 @@ import com.lab7.common.models.Ticket;
 
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.Stack;
+import java.util.Collection;
 
 /**
  * Класс, представляющий статус выполнения операции.
@@ -14,7 +14,7 @@ public class ExecutionStatus implements Serializable {
     private static final long serialVersionUID = 13L;
     private final boolean status;
     private String message;
-    private Stack<Ticket> collection;
+    private Collection<Ticket> collection;
 
     /**
      * Конструктор для создания объекта ExecutionStatus.
@@ -27,7 +27,14 @@ public class ExecutionStatus implements Serializable {
         this.message = message;
     }
 
-    public ExecutionStatus(boolean success, Stack<Ticket> collection) {
+    /**
+     * Конструктор для ответа с элементами коллекции. Элементы не копируются: сервер может передать
+     * неизменяемую версию коллекции целиком, и она будет обойдена только при кодировании ответа.
+     *
+     * @param success флаг успешности выполнения операции
+     * @param collection элементы ответа
+     */
+    public ExecutionStatus(boolean success, Collection<Ticket> collection) {
         this.status = success;
         this.collection = collection;
     }
@@ -42,7 +49,7 @@ public class ExecutionStatus implements Serializable {
     }
 
 
-    public Stack<Ticket> getCollection() {
+    public Collection<Ticket> getCollection() {
         return collection;
     }
 
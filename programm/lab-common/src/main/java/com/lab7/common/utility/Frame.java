@@ -0,0 +1,118 @@
+package com.lab7.common.utility;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Формат кадра при передаче сообщений между клиентом и сервером.
+ * Кадр состоит из заголовка фиксированной длины (длина полезной нагрузки, int) и самой нагрузки.
+ * Старший бит заголовка означает, что нагрузка сжата: тогда она начинается с исходной длины (int),
+ * за которой следуют данные в формате Deflate.
+ */
+public final class Frame {
+    /**
+     * Размер заголовка кадра в байтах.
+     */
+    public static final int HEADER_SIZE = Integer.BYTES;
+    /**
+     * Флаг сжатой нагрузки в заголовке кадра.
+     */
+    public static final int COMPRESSED_FLAG = 0x80000000;
+
+    private Frame() {
+    }
+
+    /**
+     * Читает один кадр целиком из блокирующего канала и при необходимости распаковывает его.
+     * Память под нагрузку выделяется только после проверки её размера, как и в {@link FrameDecoder}.
+     *
+     * @param channel канал для чтения
+     * @param maxFrameSize максимальный допустимый размер полезной нагрузки в байтах, для сжатого кадра - и после распаковки
+     * @return полезная нагрузка кадра
+     * @throws ProtocolException если размер кадра превышает допустимый
+     * @throws IOException если соединение закрыто или произошла ошибка чтения
+     */
+    public static byte[] read(ReadableByteChannel channel, int maxFrameSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        int rawHeader = header.flip().getInt();
+        int length = rawHeader & ~COMPRESSED_FLAG;
+        checkSize(length, maxFrameSize);
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload);
+        return (rawHeader & COMPRESSED_FLAG) != 0 ? decompress(payload.array(), maxFrameSize) : payload.array();
+    }
+
+    private static void checkSize(int length, int maxFrameSize) throws ProtocolException {
+        if (length < 0 || length > maxFrameSize) {
+            throw new ProtocolException("Недопустимый размер кадра: " + length + " (максимум " + maxFrameSize + ")");
+        }
+    }
+
+    /**
+     * Сжимает готовый кадр.
+     *
+     * @param frame кадр с заголовком, готовый к чтению
+     * @param deflater настроенный компрессор; сбрасывается перед использованием
+     * @return сжатый кадр, готовый к чтению
+     */
+    public static ByteBuffer compress(ByteBuffer frame, Deflater deflater) {
+        int length = frame.remaining() - HEADER_SIZE;
+        deflater.reset();
+        deflater.setInput(frame.slice(frame.position() + HEADER_SIZE, length));
+        deflater.finish();
+        ByteBuffer compressed = ByteBuffer.allocate(2 * HEADER_SIZE + length / 2 + 64).position(2 * HEADER_SIZE);
+        while (!deflater.finished()) {
+            if (!compressed.hasRemaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(compressed.capacity() * 2);
+                grown.put(compressed.flip());
+                compressed = grown;
+            }
+            deflater.deflate(compressed);
+        }
+        compressed.putInt(0, (compressed.position() - HEADER_SIZE) | COMPRESSED_FLAG);
+        compressed.putInt(HEADER_SIZE, length);
+        return compressed.flip();
+    }
+
+    private static byte[] decompress(byte[] payload, int maxFrameSize) throws ProtocolException {
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer input = ByteBuffer.wrap(payload);
+            int length = input.getInt();
+            checkSize(length, maxFrameSize);
+            byte[] result = new byte[length];
+            inflater.setInput(input);
+            int inflated = 0;
+            while (inflated < result.length && !inflater.finished()) {
+                int count = inflater.inflate(result, inflated, result.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != result.length) {
+                throw new ProtocolException("Сжатый кадр повреждён");
+            }
+            return result;
+        } catch (DataFormatException | RuntimeException e) {
+            throw new ProtocolException("Сжатый кадр повреждён: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException("Соединение закрыто сервером");
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.lab7.common.utility;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Инкрементальный декодер кадров для неблокирующего канала.
+ * Накапливает байты между чтениями, пока кадр не придёт целиком, и переиспользует свой буфер.
+ */
+public class FrameDecoder {
+    private static final int INITIAL_CAPACITY = 4096;
+    private final int maxFrameSize;
+    private ByteBuffer buffer; // Всегда в режиме записи, накопленные данные лежат в [0, position)
+
+    /**
+     * Конструктор декодера.
+     *
+     * @param maxFrameSize максимальный допустимый размер полезной нагрузки кадра в байтах
+     */
+    public FrameDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+        this.buffer = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, Frame.HEADER_SIZE + maxFrameSize));
+    }
+
+    /**
+     * Считывает из канала все доступные на данный момент байты.
+     *
+     * @param channel канал для чтения
+     * @return количество прочитанных байт или -1, если соединение закрыто
+     * @throws IOException если произошла ошибка чтения
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        int total = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                ensureCapacity(buffer.capacity() * 2);
+                if (!buffer.hasRemaining()) {
+                    return total; // Буфер вмещает максимальный кадр, остальное дочитаем после его разбора
+                }
+            }
+            int bytesRead = channel.read(buffer);
+            if (bytesRead == -1) {
+                return total == 0 ? -1 : total;
+            }
+            if (bytesRead == 0) {
+                return total;
+            }
+            total += bytesRead;
+        }
+    }
+
+    /**
+     * Извлекает следующий полностью полученный кадр.
+     *
+     * @return полезная нагрузка кадра или null, если кадр ещё не получен целиком
+     * @throws ProtocolException если длина кадра превышает допустимую
+     */
+    public byte[] nextFrame() throws ProtocolException {
+        if (buffer.position() < Frame.HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(0);
+        if (length < 0 || length > maxFrameSize) {
+            throw new ProtocolException("Недопустимый размер кадра: " + length + " (максимум " + maxFrameSize + ")");
+        }
+        if (buffer.position() < Frame.HEADER_SIZE + length) {
+            ensureCapacity(Frame.HEADER_SIZE + length);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.flip();
+        buffer.position(Frame.HEADER_SIZE);
+        buffer.get(payload);
+        buffer.compact(); // Остаток следующего кадра переносится в начало буфера
+        return payload;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int newCapacity = Math.min(capacity, Frame.HEADER_SIZE + maxFrameSize);
+        if (newCapacity > buffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(newCapacity);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.lab7.common.utility;
+
+import com.lab7.common.models.Coordinates;
+import com.lab7.common.models.Event;
+import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketBuilder;
+import com.lab7.common.models.TicketType;
+import com.lab7.common.validators.ArgumentValidator;
+import com.lab7.common.validators.EmptyValidator;
+import com.lab7.common.validators.FileNameValidator;
+import com.lab7.common.validators.IdValidator;
+import com.lab7.common.validators.RangeValidator;
+import com.lab7.common.validators.ShowValidator;
+import com.lab7.common.validators.TypeValidator;
+import com.lab7.common.validators.UserPermissionValidator;
+
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Двоичный кодек сообщений клиента и сервера.
+ * Поля записываются напрямую в ByteBuffer: длины и счётчики - в формате varint, целые числа со знаком -
+ * в формате zigzag varint, перечисления - порядковым номером. Строки пишутся в UTF-8 один раз на сообщение,
+ * повторы (имена пользователей, мероприятия и т.п.) заменяются ссылкой на первое вхождение.
+ * Приветствие клиента - флаг поддержки сжатия (байт) и хэш сохранённого у клиента списка команд, без идентификатора запроса.
+ * Запрос - идентификатор запроса, строка команды, элемент, логин и пароль, токен сессии.
+ * Ответ начинается с байта типа и идентификатора запроса, по которому клиент сопоставляет ответы; дальше идёт статус выполнения
+ * с токеном сессии либо список команд. Ответы на приветствие (список команд или подтверждение, что он не изменился)
+ * ни к какому запросу не относятся, их идентификатор всегда 0.
+ */
+public final class MessageCodec {
+    private static final byte RESPONSE_COMMANDS = 0;
+    private static final byte RESPONSE_STATUS = 1;
+    private static final byte RESPONSE_CHUNK = 2; // Промежуточная часть ответа, за ней последуют другие с тем же id
+    private static final byte RESPONSE_COMMANDS_UNCHANGED = 3; // Сохранённый у клиента список команд актуален
+    private static final byte RESPONSE_SESSION_EXPIRED = 4; // Токен сессии недействителен, клиенту нужно войти заново
+    private static final int INITIAL_CAPACITY = 256;
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Кодирует приветствие клиента в готовый к отправке кадр.
+     *
+     * @param hello приветствие
+     * @return буфер с заголовком и полезной нагрузкой, готовый к чтению
+     */
+    public static ByteBuffer encodeHello(ClientHello hello) {
+        Writer writer = new Writer();
+        writer.putBoolean(hello.isCompressionSupported());
+        writer.putString(hello.getCommandsHash());
+        return writer.toFrame();
+    }
+
+    /**
+     * Декодирует приветствие клиента из полезной нагрузки кадра.
+     *
+     * @param payload полезная нагрузка кадра
+     * @return приветствие
+     * @throws ProtocolException если данные повреждены
+     */
+    public static ClientHello decodeHello(ByteBuffer payload) throws ProtocolException {
+        try {
+            Reader reader = new Reader(payload);
+            boolean compressionSupported = payload.get() != 0;
+            return new ClientHello(compressionSupported, reader.getString());
+        } catch (RuntimeException e) {
+            throw new ProtocolException("Некорректный формат приветствия: " + e);
+        }
+    }
+
+    /**
+     * Кодирует запрос в готовый к отправке кадр.
+     *
+     * @param request запрос
+     * @return буфер с заголовком и полезной нагрузкой, готовый к чтению
+     */
+    public static ByteBuffer encodeRequest(Request request) {
+        Writer writer = new Writer();
+        writer.putUnsignedVarLong(request.getId());
+        writer.putString(request.getCommandLine());
+        writer.putTicket(request.getTicket());
+        writer.putUser(request.getUser());
+        writer.putString(request.getSessionToken());
+        return writer.toFrame();
+    }
+
+    /**
+     * Кодирует ответ в готовый к отправке кадр.
+     *
+     * @param response ответ
+     * @return буфер с заголовком и полезной нагрузкой, готовый к чтению
+     */
+    public static ByteBuffer encodeResponse(Response response) {
+        Writer writer = new Writer();
+        if (response.getCommandsMap() != null) {
+            writer.put(RESPONSE_COMMANDS);
+            writer.putUnsignedVarLong(response.getRequestId());
+            writer.putCommands(response.getCommandsMap());
+        } else {
+            writer.put(response.isPartial() ? RESPONSE_CHUNK
+                    : response.isSessionExpired() ? RESPONSE_SESSION_EXPIRED : RESPONSE_STATUS);
+            writer.putUnsignedVarLong(response.getRequestId());
+            writer.putStatus(response.getExecutionStatus());
+            writer.putString(response.getSessionToken());
+        }
+        return writer.toFrame();
+    }
+
+    /**
+     * Кодирует ответ на приветствие, подтверждающий, что сохранённый у клиента список команд актуален.
+     *
+     * @return буфер с заголовком и полезной нагрузкой, готовый к чтению
+     */
+    public static ByteBuffer encodeCommandsUnchanged() {
+        Writer writer = new Writer();
+        writer.put(RESPONSE_COMMANDS_UNCHANGED);
+        writer.putUnsignedVarLong(0);
+        return writer.toFrame();
+    }
+
+    /**
+     * Вычисляет хэш полезной нагрузки кадра (SHA-256 в шестнадцатеричном виде).
+     * Клиент и сервер сравнивают по нему закодированные списки команд.
+     *
+     * @param payload полезная нагрузка кадра; позиция буфера не меняется
+     * @return хэш
+     */
+    public static String digest(ByteBuffer payload) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(payload.duplicate());
+            StringBuilder hash = new StringBuilder();
+            for (byte b : messageDigest.digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 не поддерживается", e);
+        }
+    }
+
+    /**
+     * Декодирует запрос из полезной нагрузки кадра.
+     *
+     * @param payload полезная нагрузка кадра
+     * @return запрос
+     * @throws ProtocolException если данные повреждены
+     */
+    public static Request decodeRequest(ByteBuffer payload) throws ProtocolException {
+        try {
+            Reader reader = new Reader(payload);
+            long id = reader.getUnsignedVarLong();
+            String text = reader.getString();
+            if (text == null) {
+                throw new ProtocolException("Запрос без текста команды");
+            }
+            Ticket ticket = reader.getTicket();
+            Pair<String, String> user = reader.getUser();
+            Request request = new Request(text, ticket, user);
+            request.setId(id);
+            request.setSessionToken(reader.getString());
+            return request;
+        } catch (RuntimeException e) {
+            throw new ProtocolException("Некорректный формат запроса: " + e);
+        }
+    }
+
+    /**
+     * Декодирует ответ из полезной нагрузки кадра.
+     *
+     * @param payload полезная нагрузка кадра
+     * @return ответ
+     * @throws ProtocolException если данные повреждены
+     */
+    public static Response decodeResponse(ByteBuffer payload) throws ProtocolException {
+        try {
+            Reader reader = new Reader(payload);
+            byte type = payload.get();
+            long requestId = reader.getUnsignedVarLong();
+            Response response = switch (type) {
+                case RESPONSE_COMMANDS -> new Response(reader.getCommands());
+                case RESPONSE_STATUS, RESPONSE_CHUNK, RESPONSE_SESSION_EXPIRED -> {
+                    Response status = new Response(reader.getStatus());
+                    status.setSessionToken(reader.getString());
+                    yield status;
+                }
+                case RESPONSE_COMMANDS_UNCHANGED -> {
+                    Response unchanged = new Response((ExecutionStatus) null);
+                    unchanged.setCommandsUnchanged(true);
+                    yield unchanged;
+                }
+                default -> throw new IllegalArgumentException("неизвестный тип ответа " + type);
+            };
+            response.setRequestId(requestId);
+            response.setPartial(type == RESPONSE_CHUNK);
+            response.setSessionExpired(type == RESPONSE_SESSION_EXPIRED);
+            return response;
+        } catch (RuntimeException e) {
+            throw new ProtocolException("Некорректный формат ответа: " + e);
+        }
+    }
+
+    private static byte validatorTag(ArgumentValidator validator) {
+        if (validator == null) return 0;
+        if (validator instanceof EmptyValidator) return 1;
+        if (validator instanceof IdValidator) return 2;
+        if (validator instanceof TypeValidator) return 3;
+        if (validator instanceof UserPermissionValidator) return 4;
+        if (validator instanceof ShowValidator) return 5;
+        if (validator instanceof FileNameValidator) return 6;
+        if (validator instanceof RangeValidator) return 7;
+        throw new IllegalArgumentException("Валидатор " + validator.getClass().getName() + " не поддерживается кодеком");
+    }
+
+    private static ArgumentValidator validatorOf(byte tag) {
+        return switch (tag) {
+            case 0 -> null;
+            case 1 -> new EmptyValidator();
+            case 2 -> new IdValidator();
+            case 3 -> new TypeValidator();
+            case 4 -> new UserPermissionValidator();
+            case 5 -> new ShowValidator();
+            case 6 -> new FileNameValidator();
+            case 7 -> new RangeValidator();
+            default -> throw new IllegalArgumentException("неизвестный валидатор " + tag);
+        };
+    }
+
+    /**
+     * Растущий буфер для записи кадра. Первые байты зарезервированы под заголовок с длиной.
+     */
+    private static final class Writer {
+        private final Map<String, Integer> strings = new HashMap<>();
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY).position(Frame.HEADER_SIZE);
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+
+        private ByteBuffer toFrame() {
+            buffer.putInt(0, buffer.position() - Frame.HEADER_SIZE);
+            return buffer.flip();
+        }
+
+        private void put(byte value) {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        private void putBoolean(boolean value) {
+            put((byte) (value ? 1 : 0));
+        }
+
+        private void putVarLong(long value) {
+            putUnsignedVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void putVarInt(int value) {
+            putUnsignedVarLong(value);
+        }
+
+        private void putUnsignedVarLong(long raw) {
+            ensure(10);
+            while ((raw & ~0x7FL) != 0) {
+                buffer.put((byte) ((raw & 0x7F) | 0x80));
+                raw >>>= 7;
+            }
+            buffer.put((byte) raw);
+        }
+
+        /**
+         * Пишет строку: 0 - null, нечётное число - ссылка на ранее записанную строку,
+         * чётное - длина новой строки в байтах, за которой следуют сами байты.
+         */
+        private void putString(String value) {
+            if (value == null) {
+                putVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                putUnsignedVarLong(((long) index << 1) | 1);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putUnsignedVarLong((bytes.length + 1L) << 1);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void putNullableLong(Long value) {
+            putBoolean(value != null);
+            if (value != null) {
+                putVarLong(value);
+            }
+        }
+
+        private void putUser(Pair<String, String> user) {
+            putBoolean(user != null);
+            if (user != null) {
+                putString(user.getFirst());
+                putString(user.getSecond());
+            }
+        }
+
+        private void putCommands(Map<String, Pair<ArgumentValidator, Boolean>> commands) {
+            putVarInt(commands.size());
+            commands.forEach((name, data) -> {
+                putString(name);
+                put(validatorTag(data.getFirst()));
+                putBoolean(data.getSecond());
+            });
+        }
+
+        private void putStatus(ExecutionStatus status) {
+            putBoolean(status.isSuccess());
+            putString(status.getMessage());
+            if (status.getCollection() == null) {
+                putVarInt(0);
+                return;
+            }
+            putVarInt(status.getCollection().size() + 1);
+            for (Ticket ticket : status.getCollection()) {
+                putTicket(ticket);
+            }
+        }
+
+        private void putTicket(Ticket ticket) {
+            putBoolean(ticket != null);
+            if (ticket == null) {
+                return;
+            }
+            putNullableLong(ticket.getId());
+            putString(ticket.getName());
+            Coordinates coordinates = ticket.getCoordinates();
+            putBoolean(coordinates != null);
+            if (coordinates != null) {
+                ensure(Double.BYTES);
+                buffer.putDouble(coordinates.getX());
+                putBoolean(coordinates.getY() != null);
+                if (coordinates.getY() != null) {
+                    ensure(Float.BYTES);
+                    buffer.putFloat(coordinates.getY());
+                }
+            }
+            LocalDateTime creationDate = ticket.getCreationDate();
+            putBoolean(creationDate != null);
+            if (creationDate != null) {
+                putVarLong(creationDate.toEpochSecond(ZoneOffset.UTC));
+                putVarInt(creationDate.getNano());
+            }
+            putNullableLong(ticket.getPrice());
+            putString(ticket.getDescription());
+            put((byte) (ticket.getType() == null ? -1 : ticket.getType().ordinal()));
+            Event event = ticket.getEvent();
+            putBoolean(event != null);
+            if (event != null) {
+                putString(event.getName());
+                putString(event.getTime());
+            }
+            putString(ticket.getUser());
+        }
+    }
+
+    /**
+     * Чтение полей сообщения из полезной нагрузки кадра.
+     */
+    private static final class Reader {
+        private final List<String> strings = new ArrayList<>();
+        private final ByteBuffer in;
+
+        private Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        private Map<String, Pair<ArgumentValidator, Boolean>> getCommands() {
+            int size = getVarInt();
+            Map<String, Pair<ArgumentValidator, Boolean>> commands = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String name = getString();
+                ArgumentValidator validator = validatorOf(in.get());
+                commands.put(name, new Pair<>(validator, in.get() != 0));
+            }
+            return commands;
+        }
+
+        private ExecutionStatus getStatus() {
+            boolean success = in.get() != 0;
+            String message = getString();
+            int size = getVarInt() - 1;
+            if (size < 0) {
+                return new ExecutionStatus(success, message);
+            }
+            Stack<Ticket> collection = new Stack<>();
+            collection.ensureCapacity(Math.min(size, in.remaining())); // Каждый билет занимает хотя бы байт
+            for (int i = 0; i < size; i++) {
+                collection.add(getTicket());
+            }
+            return new ExecutionStatus(success, collection);
+        }
+
+        private Ticket getTicket() {
+            if (in.get() == 0) {
+                return null;
+            }
+            TicketBuilder builder = new TicketBuilder()
+                    .setId(getNullableLong())
+                    .setName(getString())
+                    .setCoordinates(getCoordinates())
+                    .setCreationDate(getDateTime())
+                    .setPrice(getNullableLong())
+                    .setDescription(getString());
+            int type = in.get();
+            builder.setType(type < 0 ? null : TicketType.values()[type]);
+            return builder.setEvent(getEvent()).setUser(getString()).buildUnchecked();
+        }
+
+        private Coordinates getCoordinates() {
+            if (in.get() == 0) {
+                return null;
+            }
+            double x = in.getDouble();
+            Float y = in.get() == 0 ? null : in.getFloat();
+            return new Coordinates(x, y);
+        }
+
+        private Event getEvent() {
+            if (in.get() == 0) {
+                return null;
+            }
+            return new Event(getString(), getString());
+        }
+
+        private LocalDateTime getDateTime() {
+            if (in.get() == 0) {
+                return null;
+            }
+            long seconds = getVarLong();
+            return LocalDateTime.ofEpochSecond(seconds, getVarInt(), ZoneOffset.UTC);
+        }
+
+        private Pair<String, String> getUser() {
+            if (in.get() == 0) {
+                return null;
+            }
+            return new Pair<>(getString(), getString());
+        }
+
+        private Long getNullableLong() {
+            return in.get() == 0 ? null : getVarLong();
+        }
+
+        private String getString() {
+            long tag = getUnsignedVarLong();
+            if (tag == 0) {
+                return null;
+            }
+            if ((tag & 1) == 1) {
+                return strings.get((int) (tag >>> 1));
+            }
+            long length = (tag >>> 1) - 1;
+            if (length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            String value;
+            if (in.hasArray()) {
+                value = new String(in.array(), in.arrayOffset() + in.position(), (int) length, StandardCharsets.UTF_8);
+                in.position(in.position() + (int) length);
+            } else {
+                byte[] bytes = new byte[(int) length];
+                in.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            strings.add(value);
+            return value;
+        }
+
+        private int getVarInt() {
+            long value = getUnsignedVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("слишком большое число varint");
+            }
+            return (int) value;
+        }
+
+        private long getVarLong() {
+            long raw = getUnsignedVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        private long getUnsignedVarLong() {
+            long raw = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                raw |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return raw;
+                }
+            }
+            throw new IllegalArgumentException("слишком длинное число varint");
+        }
+    }
+}
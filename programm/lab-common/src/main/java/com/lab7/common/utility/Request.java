@@ -10,6 +10,8 @@ public class Request implements Serializable {
     private final String string;
     private Ticket ticket = null;
     private final Pair<String, String> user;
+    private long id; // Идентификатор запроса в рамках соединения, повторяется в ответе
+    private String sessionToken; // Токен сессии; если он есть, логин и пароль не передаются
 
     public Request(String string, Pair<String, String> user) {
         this.string = string;
@@ -24,6 +26,26 @@ public class Request implements Serializable {
 
     public Pair<String, String> getUser() { return user; }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    public String getCommandLine() {
+        return string;
+    }
+
     public String[] getCommand() {
         String[] inputCommand = (string.trim() + " ").split(" ", 2);
         inputCommand[1] = inputCommand[1].trim();
@@ -37,9 +59,11 @@ public class Request implements Serializable {
     @Override
     public String toString() {
         return "Request{" +
-                "string='" + string + '\'' +
+                "id=" + id +
+                ", string='" + string + '\'' +
                 ", ticket=" + ticket +
-                ", user=" + user +
+                ", login=" + (user != null ? user.getFirst() : null) + // Пароль в лог не попадает
+                ", session=" + (sessionToken != null) +
                 '}';
     }
 }
\ No newline at end of file
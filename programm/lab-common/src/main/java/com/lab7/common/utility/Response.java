@@ -11,6 +11,11 @@ public class Response implements Serializable {
     private static final long serialVersionUID = 10L;
     private Map<String, Pair<ArgumentValidator, Boolean>> commandsData; // Второе значение - true, если команда требует ввода элемента коллекции
     private ExecutionStatus executionStatus;
+    private long requestId; // Идентификатор запроса, на который дан ответ; 0 - сообщение без запроса
+    private boolean partial; // true, если это не последняя часть ответа, разбитого на несколько кадров
+    private boolean commandsUnchanged; // true, если клиенту следует взять сохранённый список команд
+    private String sessionToken; // Токен сессии, выданный при входе или регистрации
+    private boolean sessionExpired; // true, если токен сессии из запроса недействителен и нужно войти заново
 
     public Response(Map<String, Pair<ArgumentValidator, Boolean>> commandsData) {
         this.commandsData = commandsData;
@@ -28,10 +33,52 @@ public class Response implements Serializable {
         return commandsData;
     }
 
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    public boolean isCommandsUnchanged() {
+        return commandsUnchanged;
+    }
+
+    public void setCommandsUnchanged(boolean commandsUnchanged) {
+        this.commandsUnchanged = commandsUnchanged;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    public boolean isSessionExpired() {
+        return sessionExpired;
+    }
+
+    public void setSessionExpired(boolean sessionExpired) {
+        this.sessionExpired = sessionExpired;
+    }
+
     @Override
     public String toString() {
         return "Response{" +
-                "commandsData=" + commandsData +
+                "requestId=" + requestId +
+                ", partial=" + partial +
+                ", commandsData=" + commandsData +
                 ", executionStatus='" + executionStatus + '\'' +
                 '}';
     }
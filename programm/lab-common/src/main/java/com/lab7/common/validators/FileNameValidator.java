@@ -0,0 +1,28 @@
+package com.lab7.common.validators;
+
+import com.lab7.common.utility.ExecutionStatus;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Валидатор для проверки наличия имени файла в аргументе команды.
+ */
+public class FileNameValidator extends ArgumentValidator implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 6L;
+    /**
+     * Проверяет корректность аргумента команды.
+     *
+     * @param arg Аргумент команды.
+     * @param name Имя команды.
+     * @return Статус выполнения проверки.
+     */
+    @Override
+    public ExecutionStatus validate(String arg, String name) {
+        if (arg.isEmpty()) {
+            return new ExecutionStatus(false, "У команды должен быть аргумент (имя файла)!\nПример корректного ввода: " + name);
+        }
+        return new ExecutionStatus(true, "Аргумент команды введен корректно.");
+    }
+}
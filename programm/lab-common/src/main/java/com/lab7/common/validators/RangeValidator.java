@@ -0,0 +1,41 @@
+package com.lab7.common.validators;
+
+import com.lab7.common.utility.ExecutionStatus;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Валидатор для проверки границы диапазона: целого числа - цены или, после флага --id, id элемента.
+ */
+public class RangeValidator extends ArgumentValidator implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 7L;
+    /**
+     * Проверяет корректность аргумента команды.
+     *
+     * @param arg Аргумент команды.
+     * @param name Имя команды.
+     * @return Статус выполнения проверки.
+     */
+    @Override
+    public ExecutionStatus validate(String arg, String name) {
+        String[] args = arg.isEmpty() ? new String[0] : arg.split("\\s+");
+        if (args.length > 0 && args[0].startsWith("--")) {
+            if (!args[0].equals("--id")) {
+                return new ExecutionStatus(false, "Неизвестный флаг " + args[0] + "! Доступен только --id.");
+            }
+            if (args.length != 2) {
+                return new ExecutionStatus(false, "После флага --id должен быть id элемента!\nПример корректного ввода: " + name);
+            }
+        } else if (args.length != 1) {
+            return new ExecutionStatus(false, "У команды должен быть один аргумент (price)!\nПример корректного ввода: " + name);
+        }
+        try {
+            Long.parseLong(args[args.length - 1]);
+        } catch (NumberFormatException e) {
+            return new ExecutionStatus(false, "Формат аргумента неверен! Он должен быть целым числом.");
+        }
+        return new ExecutionStatus(true, "Аргумент команды введен корректно.");
+    }
+}
@@ -0,0 +1,69 @@
+package com.lab7.common.validators;
+
+import com.lab7.common.models.TicketType;
+import com.lab7.common.utility.ExecutionStatus;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Валидатор для проверки аргументов постраничного вывода: необязательных размера страницы и id, после которого начинается страница.
+ * Вместо них можно указать фильтр: --user имя_пользователя или --type тип.
+ */
+public class ShowValidator extends ArgumentValidator implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 5L;
+    /**
+     * Проверяет корректность аргумента команды.
+     *
+     * @param arg Аргумент команды.
+     * @param name Имя команды.
+     * @return Статус выполнения проверки.
+     */
+    @Override
+    public ExecutionStatus validate(String arg, String name) {
+        if (arg.isEmpty()) {
+            return new ExecutionStatus(true, "Аргумент команды введен корректно.");
+        }
+        String[] args = arg.split("\\s+");
+        if (args[0].startsWith("--")) {
+            return validateFilter(args, name);
+        }
+        if (args.length > 2) {
+            return new ExecutionStatus(false, "У команды не больше двух аргументов!\nПример корректного ввода: " + name);
+        }
+        try {
+            if (Integer.parseInt(args[0]) <= 0) {
+                return new ExecutionStatus(false, "Размер страницы должен быть положительным числом.");
+            }
+            if (args.length == 2) {
+                Long.parseLong(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            return new ExecutionStatus(false, "Формат аргумента неверен! Аргументы должны быть целыми числами.");
+        }
+        return new ExecutionStatus(true, "Аргумент команды введен корректно.");
+    }
+
+    private ExecutionStatus validateFilter(String[] args, String name) {
+        if (args.length != 2) {
+            return new ExecutionStatus(false, "После фильтра должно быть одно значение!\nПример корректного ввода: " + name);
+        }
+        switch (args[0]) {
+            case "--user" -> {
+                return new ExecutionStatus(true, "Аргумент команды введен корректно.");
+            }
+            case "--type" -> {
+                try {
+                    TicketType.valueOf(args[1]);
+                    return new ExecutionStatus(true, "Аргумент команды введен корректно.");
+                } catch (IllegalArgumentException e) {
+                    return new ExecutionStatus(false, "Некорректное значение поля type!\nСписок возможных значений: " + TicketType.list());
+                }
+            }
+            default -> {
+                return new ExecutionStatus(false, "Неизвестный фильтр " + args[0] + "! Доступны --user и --type.");
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.lab7.common.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Билеты для тестов модуля. Поля заполнены значениями, которые проверяют кодирование:
+ * дробные координаты, наносекунды в дате и строки не в ASCII.
+ */
+public final class TestTickets {
+    private TestTickets() {
+    }
+
+    /**
+     * Возвращает построитель корректного билета, в котором тест может заменить нужные поля.
+     *
+     * @param id идентификатор билета
+     * @return построитель билета
+     */
+    public static TicketBuilder builder(long id) {
+        return new TicketBuilder().setId(id).setName("ticket " + id).setCoordinates(new Coordinates(id * 1.5, -2.25f))
+                .setCreationDate(LocalDateTime.of(2024, 5, 17, 12, 30, 15, 123456789)).setPrice(100 * id)
+                .setDescription("описание").setType(TicketType.values()[(int) (id % TicketType.values().length)])
+                .setEvent(new Event("концерт", "19:00")).setUser("alice");
+    }
+
+    public static Ticket ticket(long id, long price, String user) {
+        return builder(id).setPrice(price).setUser(user).build();
+    }
+}
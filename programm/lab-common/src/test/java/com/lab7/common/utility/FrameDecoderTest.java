@@ -0,0 +1,142 @@
+package com.lab7.common.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FrameDecoderTest {
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    @Test
+    void decodesWholeFrame() throws IOException {
+        byte[] frame = frame("show");
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        assertEquals(frame.length, feed(decoder, frame));
+        byte[] payload = decoder.nextFrame();
+
+        assertNotNull(payload);
+        assertEquals("show", MessageCodec.decodeRequest(ByteBuffer.wrap(payload)).getCommandLine());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void waitsForSplitHeaderAndPayload() throws IOException {
+        byte[] frame = frame("remove_by_id 42");
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        for (int i = 0; i < frame.length - 1; i++) {
+            feed(decoder, Arrays.copyOfRange(frame, i, i + 1));
+            assertNull(decoder.nextFrame(), "кадр выдан после " + (i + 1) + " байт из " + frame.length);
+        }
+        feed(decoder, Arrays.copyOfRange(frame, frame.length - 1, frame.length));
+
+        assertArrayEquals(payloadOf(frame), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void decodesSeveralFramesFromOneRead() throws IOException {
+        byte[] first = frame("info");
+        byte[] second = frame("help");
+        byte[] third = frame("show 2");
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        feed(decoder, concat(first, second, third));
+
+        assertArrayEquals(payloadOf(first), decoder.nextFrame());
+        assertArrayEquals(payloadOf(second), decoder.nextFrame());
+        assertArrayEquals(payloadOf(third), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void keepsStartOfNextFrameAfterCompletedOne() throws IOException {
+        byte[] first = frame("info");
+        byte[] second = frame("history");
+        byte[] stream = concat(first, second);
+        int split = first.length + 3; // Следующий кадр обрывается посреди заголовка
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        feed(decoder, Arrays.copyOfRange(stream, 0, split));
+        assertArrayEquals(payloadOf(first), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+
+        feed(decoder, Arrays.copyOfRange(stream, split, stream.length));
+        assertArrayEquals(payloadOf(second), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void growsBufferForFrameLargerThanInitialCapacity() throws IOException {
+        byte[] frame = frame("x".repeat(20000));
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        feed(decoder, Arrays.copyOfRange(frame, 0, 100));
+        assertNull(decoder.nextFrame());
+        feed(decoder, Arrays.copyOfRange(frame, 100, 10000));
+        assertNull(decoder.nextFrame());
+        feed(decoder, Arrays.copyOfRange(frame, 10000, frame.length));
+
+        assertArrayEquals(payloadOf(frame), decoder.nextFrame());
+    }
+
+    @Test
+    void rejectsFrameLongerThanMaximum() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(16);
+
+        feed(decoder, ByteBuffer.allocate(Frame.HEADER_SIZE).putInt(17).array());
+
+        assertThrows(ProtocolException.class, decoder::nextFrame);
+    }
+
+    @Test
+    void rejectsNegativeLength() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        feed(decoder, ByteBuffer.allocate(Frame.HEADER_SIZE).putInt(-1).array());
+
+        assertThrows(ProtocolException.class, decoder::nextFrame);
+    }
+
+    @Test
+    void reportsClosedChannel() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+
+        assertEquals(-1, feed(decoder, new byte[0]));
+    }
+
+    private static byte[] frame(String commandLine) {
+        ByteBuffer frame = MessageCodec.encodeRequest(new Request(commandLine, new Pair<>("user", "password")));
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] payloadOf(byte[] frame) {
+        return Arrays.copyOfRange(frame, Frame.HEADER_SIZE, frame.length);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteBuffer stream = ByteBuffer.allocate(Arrays.stream(parts).mapToInt(part -> part.length).sum());
+        for (byte[] part : parts) {
+            stream.put(part);
+        }
+        return stream.array();
+    }
+
+    private static int feed(FrameDecoder decoder, byte[] bytes) throws IOException {
+        return decoder.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+}
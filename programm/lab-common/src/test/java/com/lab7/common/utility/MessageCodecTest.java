@@ -0,0 +1,200 @@
+package com.lab7.common.utility;
+
+import com.lab7.common.models.TestTickets;
+import com.lab7.common.models.Ticket;
+import com.lab7.common.validators.ArgumentValidator;
+import com.lab7.common.validators.EmptyValidator;
+import com.lab7.common.validators.IdValidator;
+import com.lab7.common.validators.RangeValidator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static com.lab7.common.models.TestTickets.ticket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCodecTest {
+
+    @Test
+    void roundTripsRequestWithTicket() throws ProtocolException {
+        Request request = new Request("add", ticket(7L, 150L, "alice"), new Pair<>("alice", "secret"));
+        request.setId(123456789L);
+        request.setSessionToken("token");
+
+        Request decoded = MessageCodec.decodeRequest(payload(MessageCodec.encodeRequest(request)));
+
+        assertEquals(123456789L, decoded.getId());
+        assertEquals("add", decoded.getCommandLine());
+        assertEquals("token", decoded.getSessionToken());
+        assertEquals("alice", decoded.getUser().getFirst());
+        assertEquals("secret", decoded.getUser().getSecond());
+        assertSameTicket(request.getTicket(), decoded.getTicket());
+    }
+
+    @Test
+    void roundTripsRequestWithoutOptionalFields() throws ProtocolException {
+        Request decoded = MessageCodec.decodeRequest(payload(MessageCodec.encodeRequest(new Request("info", null))));
+
+        assertEquals("info", decoded.getCommandLine());
+        assertNull(decoded.getTicket());
+        assertNull(decoded.getUser());
+        assertNull(decoded.getSessionToken());
+    }
+
+    @Test
+    void roundTripsStatusWithCollection() throws ProtocolException {
+        List<Ticket> tickets = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            tickets.add(ticket(id, id * 10, id % 2 == 0 ? "alice" : "bob"));
+        }
+        Response response = new Response(new ExecutionStatus(true, tickets));
+        response.setRequestId(42);
+        response.setPartial(true);
+        response.setSessionToken("token");
+
+        Response decoded = MessageCodec.decodeResponse(payload(MessageCodec.encodeResponse(response)));
+
+        assertEquals(42, decoded.getRequestId());
+        assertTrue(decoded.isPartial());
+        assertFalse(decoded.isSessionExpired());
+        assertEquals("token", decoded.getSessionToken());
+        assertTrue(decoded.getExecutionStatus().isSuccess());
+        List<Ticket> decodedTickets = new ArrayList<>(decoded.getExecutionStatus().getCollection());
+        assertEquals(tickets.size(), decodedTickets.size());
+        for (int i = 0; i < tickets.size(); i++) {
+            assertSameTicket(tickets.get(i), decodedTickets.get(i));
+        }
+    }
+
+    @Test
+    void roundTripsStatusWithMessage() throws ProtocolException {
+        Response response = new Response(new ExecutionStatus(false, "Элемент не найден"));
+        response.setSessionExpired(true);
+
+        Response decoded = MessageCodec.decodeResponse(payload(MessageCodec.encodeResponse(response)));
+
+        assertFalse(decoded.getExecutionStatus().isSuccess());
+        assertEquals("Элемент не найден", decoded.getExecutionStatus().getMessage());
+        assertNull(decoded.getExecutionStatus().getCollection());
+        assertTrue(decoded.isSessionExpired());
+        assertFalse(decoded.isPartial());
+    }
+
+    @Test
+    void roundTripsCommands() throws ProtocolException {
+        Map<String, Pair<ArgumentValidator, Boolean>> commands = new HashMap<>();
+        commands.put("help", new Pair<>(new EmptyValidator(), false));
+        commands.put("update", new Pair<>(new IdValidator(), true));
+        commands.put("show", new Pair<>(new RangeValidator(), false));
+        commands.put("exit", new Pair<>(null, false));
+
+        Response decoded = MessageCodec.decodeResponse(payload(MessageCodec.encodeResponse(new Response(commands))));
+
+        Map<String, Pair<ArgumentValidator, Boolean>> decodedCommands = decoded.getCommandsMap();
+        assertEquals(commands.keySet(), decodedCommands.keySet());
+        assertInstanceOf(EmptyValidator.class, decodedCommands.get("help").getFirst());
+        assertInstanceOf(IdValidator.class, decodedCommands.get("update").getFirst());
+        assertInstanceOf(RangeValidator.class, decodedCommands.get("show").getFirst());
+        assertNull(decodedCommands.get("exit").getFirst());
+        assertTrue(decodedCommands.get("update").getSecond());
+        assertFalse(decodedCommands.get("help").getSecond());
+    }
+
+    @Test
+    void roundTripsHelloAndCommandsUnchanged() throws ProtocolException {
+        ClientHello hello = MessageCodec.decodeHello(payload(MessageCodec.encodeHello(new ClientHello(true, "abc"))));
+        Response unchanged = MessageCodec.decodeResponse(payload(MessageCodec.encodeCommandsUnchanged()));
+
+        assertTrue(hello.isCompressionSupported());
+        assertEquals("abc", hello.getCommandsHash());
+        assertTrue(unchanged.isCommandsUnchanged());
+    }
+
+    @Test
+    void decodesTicketThatFailsValidation() throws ProtocolException {
+        Ticket invalid = TestTickets.builder(1).setPrice(0L).buildUnchecked();
+        Request request = new Request("add", invalid, new Pair<>("alice", "secret"));
+
+        Request decoded = MessageCodec.decodeRequest(payload(MessageCodec.encodeRequest(request)));
+
+        assertFalse(decoded.getTicket().validate());
+        assertEquals(0L, decoded.getTicket().getPrice());
+    }
+
+    @Test
+    void rejectsTruncatedPayload() {
+        Request request = new Request("add", ticket(7L, 150L, "alice"), new Pair<>("alice", "secret"));
+        ByteBuffer payload = payload(MessageCodec.encodeRequest(request));
+        payload.limit(payload.limit() - 5);
+
+        assertThrows(ProtocolException.class, () -> MessageCodec.decodeRequest(payload));
+    }
+
+    @Test
+    void rejectsRequestWithoutCommandText() {
+        ByteBuffer payload = payload(MessageCodec.encodeRequest(new Request(null, null)));
+
+        assertThrows(ProtocolException.class, () -> MessageCodec.decodeRequest(payload));
+    }
+
+    @Test
+    void roundTripsCompressedFrame() throws IOException {
+        List<Ticket> tickets = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            tickets.add(ticket(id, 100L, "alice"));
+        }
+        ByteBuffer frame = MessageCodec.encodeResponse(new Response(new ExecutionStatus(true, tickets)));
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteBuffer compressed;
+        try {
+            compressed = Frame.compress(frame.duplicate(), deflater);
+        } finally {
+            deflater.end();
+        }
+        byte[] bytes = new byte[compressed.remaining()];
+        compressed.get(bytes);
+
+        byte[] payload = Frame.read(Channels.newChannel(new ByteArrayInputStream(bytes)), 1 << 20);
+
+        assertTrue(bytes.length < frame.remaining());
+        assertEquals(payload(frame), ByteBuffer.wrap(payload));
+        assertEquals(200, MessageCodec.decodeResponse(ByteBuffer.wrap(payload)).getExecutionStatus().getCollection().size());
+    }
+
+    @Test
+    void rejectsFrameLongerThanMaximumBeforeReadingIt() {
+        byte[] header = ByteBuffer.allocate(Frame.HEADER_SIZE).putInt(Integer.MAX_VALUE).array();
+
+        assertThrows(ProtocolException.class, () -> Frame.read(Channels.newChannel(new ByteArrayInputStream(header)), 1 << 20));
+    }
+
+    @Test
+    void rejectsCompressedFrameThatInflatesBeyondMaximum() {
+        byte[] frame = ByteBuffer.allocate(2 * Frame.HEADER_SIZE)
+                .putInt(Frame.HEADER_SIZE | Frame.COMPRESSED_FLAG).putInt(Integer.MAX_VALUE).array();
+
+        assertThrows(ProtocolException.class, () -> Frame.read(Channels.newChannel(new ByteArrayInputStream(frame)), 1 << 20));
+    }
+
+    private static void assertSameTicket(Ticket expected, Ticket actual) {
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static ByteBuffer payload(ByteBuffer frame) {
+        return frame.slice(Frame.HEADER_SIZE, frame.remaining() - Frame.HEADER_SIZE);
+    }
+}
@@ -8,6 +8,8 @@ import com.lab7.server.managers.CollectionManagerProxy;
 import com.lab7.server.managers.CommandManager;
 import com.lab7.server.managers.ThreadManager;
 import com.lab7.server.managers.ServerNetworkManager;
+import com.lab7.server.managers.SnapshotManager;
+import com.lab7.server.managers.WriteBehindJournal;
 import com.lab7.server.utility.CommandNames;
 
 import com.lab7.common.utility.ExecutionStatus;
@@ -88,16 +90,31 @@ public final class Server {
             register(CommandNames.REMOVE_FIRST.getName(), new RemoveFirst());
             register(CommandNames.ADD_IF_MIN.getName(), new AddIfMin());
             register(CommandNames.SORT.getName(), new Sort());
-//            register(CommandNames.REMOVE_ALL_BY_GENRE.getName(), new RemoveAllByGenre());
+            register(CommandNames.REMOVE_ALL_BY_GENRE.getName(), new RemoveAllByGenre());
+            register(CommandNames.REMOVE_GREATER.getName(), new RemoveGreater());
+            register(CommandNames.REMOVE_LOWER.getName(), new RemoveLower());
 //            register(CommandNames.PRINT_FIELD_ASCENDING_DESCRIPTION.getName(), new PrintFieldAscendingDescription());
 //            register(CommandNames.PRINT_FIELD_DESCENDING_DESCRIPTION.getName(), new PrintFieldDescendingDescription());
             register(CommandNames.UPDATE_USER_PERMISSION.getName(), new UpdateUserPermission());
             register(CommandNames.SHOW_USER_LIST.getName(), new ShowUserList());
+            register(CommandNames.IMPORT.getName(), new Import());
         }};
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 networkManager.close();
+                if (WriteBehindJournal.isEnabled()) { // Отложенные изменения переносим в базу данных, чтобы журнал остался пустым
+                    ExecutionStatus drainStatus = WriteBehindJournal.getInstance().drain();
+                    if (!drainStatus.isSuccess()) {
+                        logger.warning(drainStatus.getMessage());
+                    }
+                }
+                if (SnapshotManager.isEnabled()) { // Свежий снимок: при следующем запуске догружать почти нечего
+                    ExecutionStatus snapshotStatus = SnapshotManager.getInstance().saveNow();
+                    if (!snapshotStatus.isSuccess()) {
+                        logger.warning(snapshotStatus.getMessage());
+                    }
+                }
             } catch (Exception e) {
                 logger.severe("An error occurred while shutting down the server: " + e.getMessage());
             }
@@ -0,0 +1,49 @@
+package com.lab7.server.commands;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.common.utility.ExecutionStatus;
+import com.lab7.common.utility.Pair;
+import com.lab7.common.validators.FileNameValidator;
+import com.lab7.server.utility.Command;
+import com.lab7.server.utility.CommandNames;
+import com.lab7.server.utility.TicketCsvParser;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Класс команды для массового добавления элементов из CSV-файла, лежащего на сервере.
+ * Файл разбирается целиком до записи в базу данных: при ошибке в любой строке не добавляется ни один элемент.
+ */
+public class Import extends Command<FileNameValidator> {
+
+    /**
+     * Конструктор команды import.
+     */
+    public Import() {
+        super(CommandNames.IMPORT.getName() + " file_name", CommandNames.IMPORT.getDescription(), new FileNameValidator());
+    }
+
+    /**
+     * Выполняет команду импорта.
+     * @param argument Путь к файлу на сервере.
+     * @return Статус выполнения команды.
+     */
+    @Override
+    protected ExecutionStatus runInternal(String argument, Pair<String, String> user) {
+        List<Ticket> tickets;
+        try {
+            tickets = TicketCsvParser.parse(Path.of(argument), user.getFirst());
+        } catch (IOException | InvalidPathException e) {
+            return new ExecutionStatus(false, "Не удалось прочитать файл " + argument + ": " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return new ExecutionStatus(false, "Файл не импортирован. " + e.getMessage());
+        }
+        if (tickets.isEmpty()) {
+            return new ExecutionStatus(false, "В файле нет элементов коллекции.");
+        }
+        return collectionManager.addAll(tickets, user);
+    }
+}
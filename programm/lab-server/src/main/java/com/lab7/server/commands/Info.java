@@ -3,6 +3,7 @@ package com.lab7.server.commands;
 import com.lab7.common.utility.Pair;
 import com.lab7.server.utility.Command;
 import com.lab7.server.utility.CommandNames;
+import com.lab7.server.utility.TicketCollection;
 import com.lab7.common.validators.EmptyValidator;
 import com.lab7.common.utility.ExecutionStatus;
 
@@ -25,10 +26,12 @@ public class Info extends Command<EmptyValidator> {
      */
     @Override
     protected ExecutionStatus runInternal(String argument, Pair<String, String> user) {
-        String infoMessage = "Тип коллекции: " + collectionManager.getTickets().getClass().getName() +
+        TicketCollection tickets = collectionManager.getTickets(); // Размер и версия берутся из одной версии коллекции
+        String infoMessage = "Тип коллекции: " + tickets.getClass().getName() +
                 "\nДата инициализации: " + collectionManager.getInitializationDate() +
                 "\nДата последнего сохранения: " + collectionManager.getLastSaveDate() +
-                "\nКоличество элементов: " + collectionManager.getTickets().size() +
+                "\nКоличество элементов: " + tickets.size() +
+                "\nВерсия коллекции: " + tickets.getVersion() +
                 "\nИнформация о коллекции успешно выведена!";
         return new ExecutionStatus(true, infoMessage);
     }
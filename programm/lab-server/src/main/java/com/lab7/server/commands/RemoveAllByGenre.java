@@ -0,0 +1,35 @@
+package com.lab7.server.commands;
+
+import com.lab7.common.models.TicketType;
+import com.lab7.common.utility.Pair;
+import com.lab7.server.utility.Command;
+import com.lab7.server.utility.CommandNames;
+import com.lab7.common.validators.TypeValidator;
+import com.lab7.common.utility.ExecutionStatus;
+
+/**
+ * Класс команды для удаления всех элементов коллекции с указанным типом.
+ * Пользователь с правами USER удаляет только свои элементы.
+ */
+public class RemoveAllByGenre extends Command<TypeValidator> {
+    /**
+     * Конструктор команды removeAllByGenre.
+     */
+    public RemoveAllByGenre() {
+        super(CommandNames.REMOVE_ALL_BY_GENRE.getName() + " type", CommandNames.REMOVE_ALL_BY_GENRE.getDescription(), new TypeValidator());
+    }
+
+    /**
+     * Выполняет команду удаления элементов коллекции с указанным типом.
+     * @param argument Аргумент команды, содержащий тип.
+     * @return Статус выполнения команды.
+     */
+    @Override
+    protected ExecutionStatus runInternal(String argument, Pair<String, String> user) {
+        TicketType type = TicketType.valueOf(argument);
+        if (collectionManager.getCollection().ofType(type).isEmpty()) {
+            return new ExecutionStatus(false, "Элементы с указанным type не найдены!");
+        }
+        return collectionManager.removeAllByGenre(type, user);
+    }
+}
@@ -0,0 +1,31 @@
+package com.lab7.server.commands;
+
+import com.lab7.common.utility.Pair;
+import com.lab7.server.utility.Command;
+import com.lab7.server.utility.CommandNames;
+import com.lab7.common.validators.RangeValidator;
+import com.lab7.common.utility.ExecutionStatus;
+import com.lab7.server.utility.TicketRange;
+
+/**
+ * Класс команды для удаления всех элементов коллекции, цена или id которых меньше заданного.
+ * Пользователь с правами USER удаляет только свои элементы.
+ */
+public class RemoveLower extends Command<RangeValidator> {
+    /**
+     * Конструктор команды removeLower.
+     */
+    public RemoveLower() {
+        super(CommandNames.REMOVE_LOWER.getName() + " [--id] value", CommandNames.REMOVE_LOWER.getDescription(), new RangeValidator());
+    }
+
+    /**
+     * Выполняет команду удаления элементов коллекции, цена или id которых меньше заданного.
+     * @param argument Аргумент команды: цена или флаг --id и id.
+     * @return Статус выполнения команды.
+     */
+    @Override
+    protected ExecutionStatus runInternal(String argument, Pair<String, String> user) {
+        return collectionManager.removeInRange(TicketRange.parse(argument, false), user);
+    }
+}
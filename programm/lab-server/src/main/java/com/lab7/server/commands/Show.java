@@ -1,32 +1,60 @@
 package com.lab7.server.commands;
 
+import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketType;
 import com.lab7.common.utility.Pair;
+import com.lab7.common.validators.ShowValidator;
 import com.lab7.server.utility.Command;
 import com.lab7.server.utility.CommandNames;
-import com.lab7.common.validators.EmptyValidator;
+import com.lab7.server.utility.TicketCollection;
 import com.lab7.common.utility.ExecutionStatus;
+
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Класс команды для вывода всех элементов коллекции в строковом представлении.
+ * Без аргументов выводит всю коллекцию (большой ответ передаётся клиенту частями),
+ * с аргументами - одну страницу: не больше page_size элементов с id больше after_id в порядке возрастания id.
+ * С фильтром --user или --type выводит элементы одного владельца или одного типа, взятые из индекса коллекции.
  */
-public class Show extends Command<EmptyValidator> {
+public class Show extends Command<ShowValidator> {
 
     /**
      * Конструктор команды show.
      */
     public Show() {
-        super(CommandNames.SHOW.getName(), CommandNames.SHOW.getDescription(), new EmptyValidator());
+        super(CommandNames.SHOW.getName() + " [page_size [after_id] | --user name | --type type]", CommandNames.SHOW.getDescription(), new ShowValidator());
     }
 
     /**
-     * Выполняет команду вывода всех элементов коллекции.
-     * @param argument Аргумент команды (не используется).
+     * Выполняет команду вывода элементов коллекции.
+     * @param argument Размер страницы и id последнего элемента предыдущей страницы (необязательные) или фильтр.
      * @return Статус выполнения команды.
      */
     @Override
     protected ExecutionStatus runInternal(String argument, Pair<String, String> user) {
-        if (collectionManager.getCollection().isEmpty()) {
+        TicketCollection snapshot = collectionManager.getCollection(); // Версия коллекции не меняется, пока мы её читаем
+        if (snapshot.isEmpty()) {
             return new ExecutionStatus(true, "Коллекция пуста.\n");
         }
-        return new ExecutionStatus(true, collectionManager.getCollection());
+        if (argument.isEmpty()) {
+            return new ExecutionStatus(true, snapshot); // Ответ кодируется частями прямо из версии, без копирования
+        }
+        String[] args = argument.split("\\s+");
+        if (args[0].startsWith("--")) {
+            Collection<Ticket> filtered = args[0].equals("--user") ? snapshot.ownedBy(args[1]) : snapshot.ofType(TicketType.valueOf(args[1]));
+            if (filtered.isEmpty()) {
+                return new ExecutionStatus(true, "Подходящих элементов нет.");
+            }
+            return new ExecutionStatus(true, filtered);
+        }
+        int pageSize = Integer.parseInt(args[0]);
+        long afterId = args.length > 1 ? Long.parseLong(args[1]) : Long.MIN_VALUE;
+        List<Ticket> page = snapshot.page(afterId, pageSize); // Элементы в версии уже упорядочены по id
+        if (page.isEmpty()) {
+            return new ExecutionStatus(true, "Больше элементов нет.");
+        }
+        return new ExecutionStatus(true, page);
     }
 }
@@ -7,9 +7,6 @@ import com.lab7.common.validators.EmptyValidator;
 import com.lab7.common.models.Ticket;
 import com.lab7.common.utility.ExecutionStatus;
 
-import java.util.Comparator;
-import java.util.Stack;
-
 /**
  * Класс команды для добавления нового элемента в коллекцию, если его значение меньше, чем у наименьшего элемента этой коллекции.
  */
@@ -29,15 +26,6 @@ public class AddIfMin extends AskingCommand<EmptyValidator> {
      */
     @Override
     protected ExecutionStatus runInternal(Ticket ticket, Pair<String, String> user) {
-        if (collectionManager.getCollection().isEmpty()) {
-            return collectionManager.add(ticket, user);
-        }
-        Stack<Ticket> bufCollection = collectionManager.getCollection();
-        bufCollection.sort(Comparator.naturalOrder());
-        if (ticket.compareTo(bufCollection.firstElement()) < 0) {
-            return collectionManager.add(ticket, user);
-        } else {
-            return new ExecutionStatus(true, "Элемент не является наименьшим в коллекции!");
-        }
+        return collectionManager.addIfMin(ticket, user);
     }
 }
\ No newline at end of file
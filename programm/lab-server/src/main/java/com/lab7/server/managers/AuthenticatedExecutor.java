@@ -3,6 +3,8 @@ package com.lab7.server.managers;
 import com.lab7.common.models.Ticket;
 import com.lab7.common.utility.ExecutionStatus;
 import com.lab7.common.utility.Pair;
+import com.lab7.common.utility.Request;
+import com.lab7.common.utility.Response;
 import com.lab7.server.Server;
 
 public class AuthenticatedExecutor implements ExecutorInterface {
@@ -12,10 +14,37 @@ public class AuthenticatedExecutor implements ExecutorInterface {
         this.executor = executor;
     }
 
+    /**
+     * Выполняет запрос клиента.
+     * Запрос с токеном сессии проверяется по таблице сессий; после успешного входа или регистрации
+     * в ответ добавляется новый токен.
+     *
+     * @param request запрос с уже захэшированным паролем, если пароль передан
+     * @return ответ на запрос
+     */
+    public Response execute(Request request) {
+        String[] command = request.getCommand();
+        if (request.getSessionToken() != null && !isAuthCommand(command[0])) {
+            String username = SessionManager.getInstance().resolve(request.getSessionToken());
+            if (username == null) {
+                Response expired = new Response(new ExecutionStatus(false, "Сессия истекла. Выполните вход заново."));
+                expired.setSessionExpired(true);
+                return expired;
+            }
+            return new Response(runAuthorized(command, request.getTicket(), new Pair<>(username, null)));
+        }
+        ExecutionStatus status = runCommand(command, request.getTicket(), request.getUser());
+        Response response = new Response(status);
+        if (status.isSuccess() && isAuthCommand(command[0])) {
+            response.setSessionToken(SessionManager.getInstance().open(request.getUser().getFirst()));
+        }
+        return response;
+    }
+
     @Override
     public ExecutionStatus runCommand(String[] command, Ticket band, Pair<String, String> user) {
         ExecutionStatus authStatus;
-        if (command[0].equals("register") || command[0].equals("login")) {
+        if (isAuthCommand(command[0])) {
             authStatus = "register".equals(command[0])
                     ? DBManager.getInstance().addUser(user)
                     : DBManager.getInstance().checkPassword(user);
@@ -25,13 +54,21 @@ public class AuthenticatedExecutor implements ExecutorInterface {
         } else {
             authStatus = DBManager.getInstance().checkPassword(user);
             if (authStatus.isSuccess()) {
-                ExecutionStatus commandStatus = executor.runCommand(command, band, user);
-                if (commandStatus.isSuccess()) {
-                    Server.logger.info("Command '" + command[0] + "' executed successfully for user: " + user.getFirst());
-                }
-                return commandStatus;
+                return runAuthorized(command, band, user);
             }
         }
         return authStatus;
     }
-}
\ No newline at end of file
+
+    private ExecutionStatus runAuthorized(String[] command, Ticket band, Pair<String, String> user) {
+        ExecutionStatus commandStatus = executor.runCommand(command, band, user);
+        if (commandStatus.isSuccess()) {
+            Server.logger.info("Command '" + command[0] + "' executed successfully for user: " + user.getFirst());
+        }
+        return commandStatus;
+    }
+
+    private static boolean isAuthCommand(String command) {
+        return command.equals("register") || command.equals("login");
+    }
+}
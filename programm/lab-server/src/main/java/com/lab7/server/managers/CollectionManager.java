@@ -4,9 +4,11 @@ import com.lab7.common.models.Ticket;
 import com.lab7.common.models.TicketType;
 import com.lab7.common.utility.ExecutionStatus;
 import com.lab7.common.utility.Pair;
+import com.lab7.server.utility.TicketCollection;
+import com.lab7.server.utility.TicketRange;
 
 import java.time.LocalDateTime;
-import java.util.Stack;
+import java.util.List;
 
 /**
  * Интерфейс CollectionManager предоставляет методы для управления коллекцией музыкальных групп.
@@ -14,11 +16,11 @@ import java.util.Stack;
 public interface CollectionManager {
 
     /**
-     * Возвращает коллекцию музыкальных групп.
+     * Возвращает текущую версию коллекции музыкальных групп.
      *
      * @return Коллекция музыкальных групп.
      */
-    Stack<Ticket> getTickets();
+    TicketCollection getTickets();
 
     /**
      * Сортирует коллекцию музыкальных групп.
@@ -45,11 +47,12 @@ public interface CollectionManager {
     LocalDateTime getLastSaveDate();
 
     /**
-     * Возвращает коллекцию музыкальных групп.
+     * Возвращает текущую версию коллекции музыкальных групп.
+     * Версия не меняется после получения, поэтому её можно обходить без блокировок.
      *
      * @return Коллекция музыкальных групп.
      */
-    Stack<Ticket> getCollection();
+    TicketCollection getCollection();
 
     /**
      * Возвращает музыкальную группу по идентификатору.
@@ -67,6 +70,14 @@ public interface CollectionManager {
      */
     ExecutionStatus removeAllByGenre(TicketType genre, Pair<String, String> user);
 
+    /**
+     * Удаляет все элементы, у которых цена или id больше (меньше) границы.
+     *
+     * @param range Диапазон удаляемых элементов.
+     * @return Статус выполнения удаления.
+     */
+    ExecutionStatus removeInRange(TicketRange range, Pair<String, String> user);
+
     /**
      * Загружает коллекцию музыкальных групп.
      *
@@ -87,6 +98,22 @@ public interface CollectionManager {
      */
     ExecutionStatus add(Ticket band, Pair<String, String> user);
 
+    /**
+     * Добавляет элемент в коллекцию, если его цена меньше наименьшей цены элементов коллекции.
+     *
+     * @param band Элемент для добавления.
+     * @return Статус выполнения добавления.
+     */
+    ExecutionStatus addIfMin(Ticket band, Pair<String, String> user);
+
+    /**
+     * Добавляет в коллекцию сразу много элементов: все или ни одного.
+     *
+     * @param tickets Элементы для добавления; им присваиваются id.
+     * @return Статус выполнения добавления.
+     */
+    ExecutionStatus addAll(List<Ticket> tickets, Pair<String, String> user);
+
     ExecutionStatus update(Ticket band, Pair<String, String> user);
 
     /**
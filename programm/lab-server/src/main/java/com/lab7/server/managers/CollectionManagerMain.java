@@ -1,33 +1,45 @@
 package com.lab7.server.managers;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketBuilder;
 import com.lab7.common.models.TicketType;
 import com.lab7.common.utility.ExecutionStatus;
 import com.lab7.common.utility.Pair;
 
 import com.lab7.server.Server;
+import com.lab7.server.utility.TicketCollection;
+import com.lab7.server.utility.TicketRange;
 
 /**
  * Класс, управляющий коллекцией музыкальных групп.
+ * Коллекция хранится как неизменяемая версия {@link TicketCollection}, опубликованная через атомарную ссылку.
+ * Писатели выполняются по одному: меняют базу данных и публикуют новую версию. Читатели берут текущую версию без блокировок.
+ * В режиме отложенной записи версия с изменением публикуется только после того, как запись журнала сброшена на диск.
  */
 class CollectionManagerMain implements CollectionManager {
     private static volatile CollectionManagerMain instance;
     private final DBManagerInterface dbManager = DBManager.getInstance();
-    private final Map<Long, Ticket> ticketsMap = new HashMap<>();
-    private Stack<Ticket> collection = new Stack<>();
-    private LocalDateTime initializationDate;
-    private LocalDateTime lastSaveDate;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final WriteBehindJournal journal = WriteBehindJournal.isEnabled() ? WriteBehindJournal.getInstance() : null;
+    private final SnapshotManager snapshots = SnapshotManager.isEnabled() ? SnapshotManager.getInstance() : null;
+    private volatile long snapshotVersion = -1; // Версия коллекции в последнем сохранённом снимке
+    private final AtomicReference<TicketCollection> collection = new AtomicReference<>(TicketCollection.empty());
+    private TicketCollection staged = collection.get(); // Последняя версия вместе с ещё не сброшенными на диск изменениями; под writeLock
+    private final Deque<Pair<Long, TicketCollection>> unpublished = new ArrayDeque<>(); // Номер записи журнала и версия с ней; под writeLock
+    private volatile LocalDateTime initializationDate;
+    private volatile LocalDateTime lastSaveDate;
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     /**
      * Конструктор класса CollectionManagerMain.
@@ -52,18 +64,13 @@ class CollectionManagerMain implements CollectionManager {
     }
 
     /**
-     * Возвращает коллекцию музыкальных групп.
+     * Возвращает текущую версию коллекции музыкальных групп.
      *
      * @return Коллекция музыкальных групп.
      */
     @Override
-    public Stack<Ticket> getTickets() {
-        lock.readLock().lock(); // Блокировка чтения
-        try {
-            return collection;
-        } finally {
-            lock.readLock().unlock();
-        }
+    public TicketCollection getTickets() {
+        return getCollection();
     }
 
     /**
@@ -71,13 +78,7 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public void sort() {
-        // Коллекция в бд хранятся уже в отсортированном виде, поэтому там ничего не делаем
-        lock.writeLock().lock();
-        try {
-            collection.sort(Comparator.comparing(Ticket::getId));
-        } finally {
-            lock.writeLock().unlock();
-        }
+        // Коллекция и в памяти, и в бд всегда упорядочена по id, поэтому сортировать нечего
     }
 
     /**
@@ -85,19 +86,24 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public ExecutionStatus removeFirst(Pair<String, String> user) {
-        lock.writeLock().lock();
+        writeLock.lock();
         try {
-            ExecutionStatus removeStatus = dbManager.removeById(collection.pop().getId(), user);
+            ExecutionStatus drainStatus = drainJournal();
+            if (!drainStatus.isSuccess()) {
+                return drainStatus;
+            }
+            Ticket first = collection.get().first();
+            if (first == null) {
+                return new ExecutionStatus(false, "Коллекция пуста!");
+            }
+            ExecutionStatus removeStatus = dbManager.removeById(first.getId(), user);
             if (removeStatus.isSuccess()) {
                 lastSaveDate = LocalDateTime.now();
-                collection.stream().findFirst().ifPresent(band -> {
-                    ticketsMap.remove(band.getId());
-                    collection = collection.stream().skip(1).collect(Collectors.toCollection(Stack::new));
-                });
+                publish(collection.get().without(first.getId()));
             }
             return removeStatus;
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
@@ -118,27 +124,17 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public LocalDateTime getLastSaveDate() {
-        lock.readLock().lock(); // Блокировка чтения
-        try {
-            return lastSaveDate;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return lastSaveDate;
     }
 
     /**
-     * Возвращает коллекцию музыкальных групп.
+     * Возвращает текущую версию коллекции музыкальных групп. Версия не меняется, её можно обходить без блокировок.
      *
      * @return Коллекция музыкальных групп.
      */
     @Override
-    public Stack<Ticket> getCollection() {
-        lock.readLock().lock(); // Блокировка чтения
-        try {
-            return collection;
-        } finally {
-            lock.readLock().unlock();
-        }
+    public TicketCollection getCollection() {
+        return collection.get();
     }
 
     /**
@@ -149,12 +145,7 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public Ticket getById(Long id) {
-        lock.readLock().lock(); // Блокировка чтения
-        try {
-            return ticketsMap.get(id);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return collection.get().get(id);
     }
 
     /**
@@ -165,58 +156,202 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public ExecutionStatus removeAllByGenre(TicketType genre, Pair<String, String> user) {
-        lock.writeLock().lock();
+        writeLock.lock();
         try {
             ExecutionStatus accessStatus = dbManager.checkUserPermission(user);
             if (!accessStatus.isSuccess()) {
                 return accessStatus;
             }
+            ExecutionStatus drainStatus = drainJournal();
+            if (!drainStatus.isSuccess()) {
+                return drainStatus;
+            }
             ExecutionStatus removeStatus;
             if (accessStatus.getMessage().equals("USER")) {
                 removeStatus = dbManager.removeAllByGenre(genre, user);
                 if (removeStatus.isSuccess()) {
                     lastSaveDate = LocalDateTime.now();
-                    collection = collection.stream().filter(band -> !band.getType().equals(genre) || !band.getUser().equals(user.getFirst()))
-                            .collect(Collectors.toCollection(Stack::new));
-                    ticketsMap.entrySet().removeIf(entry -> entry.getValue().getType().equals(genre) && entry.getValue().getUser().equals(user.getFirst()));
+                    removeTickets(collection.get().ownedByWithType(user.getFirst(), genre));
                 }
             } else {
                 removeStatus = dbManager.removeAllByGenre(genre);
                 if (removeStatus.isSuccess()) {
                     lastSaveDate = LocalDateTime.now();
-                    collection = collection.stream().filter(band -> !band.getType().equals(genre)).collect(Collectors.toCollection(Stack::new));
-                    ticketsMap.entrySet().removeIf(entry -> entry.getValue().getType().equals(genre));
+                    removeTickets(collection.get().ofType(genre));
                 }
             }
             return removeStatus;
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет все элементы диапазона. В базе данных это один запрос DELETE ... RETURNING id,
+     * а в памяти удаляются элементы с возвращёнными id; всё выполняется под одной блокировкой писателей.
+     * Если в упорядоченном дереве коллекции нет доступных элементов диапазона, к базе данных обращаться не нужно.
+     *
+     * @param range Диапазон удаляемых элементов.
+     * @return Статус выполнения удаления.
+     */
+    @Override
+    public ExecutionStatus removeInRange(TicketRange range, Pair<String, String> user) {
+        writeLock.lock();
+        try {
+            ExecutionStatus accessStatus = dbManager.checkUserPermission(user);
+            if (!accessStatus.isSuccess()) {
+                return accessStatus;
+            }
+            ExecutionStatus drainStatus = drainJournal();
+            if (!drainStatus.isSuccess()) {
+                return drainStatus;
+            }
+            boolean ownOnly = accessStatus.getMessage().equals("USER");
+            if (range.select(collection.get()).stream().noneMatch(ticket -> !ownOnly || ticket.getUser().equals(user.getFirst()))) {
+                return new ExecutionStatus(false, "Доступные для удаления элементы, у которых " + range + ", не найдены!");
+            }
+            List<Long> removed = new ArrayList<>();
+            ExecutionStatus removeStatus = dbManager.removeInRange(range, user, removed);
+            if (removeStatus.isSuccess()) {
+                lastSaveDate = LocalDateTime.now();
+                publish(collection.get().withoutAll(removed));
+            }
+            return removeStatus;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     /**
-     * Загружает коллекцию музыкальных групп.
+     * Загружает коллекцию музыкальных групп. Если включены снимки, коллекция восстанавливается из снимка
+     * и дополняется изменениями из базы данных; без снимка коллекция загружается из базы данных целиком.
+     * После загрузки снимки начинают сохраняться периодически.
      *
      * @return Статус выполнения загрузки коллекции.
      */
     @Override
     public ExecutionStatus loadCollection() {
-        lock.writeLock().lock();
+        writeLock.lock();
         try {
-            collection.clear();
-            ticketsMap.clear();
-            ExecutionStatus loadStatus = dbManager.loadCollection(collection);
-            if (loadStatus.isSuccess()) {
-                initializationDate = LocalDateTime.now();
-                lastSaveDate = LocalDateTime.now();
-                boolean hasDuplicates = collection.stream().anyMatch(band -> ticketsMap.putIfAbsent(band.getId(), band) != null);
-                if (hasDuplicates) {
+            long nextVersion = collection.get().getVersion() + 1;
+            TicketCollection restored = snapshots != null ? restoreSnapshot(nextVersion) : null;
+            ExecutionStatus loadStatus;
+            if (restored != null) {
+                publish(restored);
+                loadStatus = new ExecutionStatus(true, "Коллекция восстановлена из снимка!");
+            } else {
+                List<TicketCollection.Fragment> loaded = new ArrayList<>();
+                loadStatus = dbManager.loadCollection(loaded);
+                if (!loadStatus.isSuccess()) {
+                    return loadStatus;
+                }
+                try {
+                    publish(TicketCollection.merge(loaded, nextVersion));
+                } catch (IllegalArgumentException e) {
                     return new ExecutionStatus(false, "Ошибка загрузки коллекции: обнаружены дубликаты id!");
                 }
             }
+            initializationDate = LocalDateTime.now();
+            lastSaveDate = LocalDateTime.now();
+            if (snapshots != null) {
+                snapshots.start(this::saveSnapshot);
+            }
             return loadStatus;
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Восстанавливает коллекцию из снимка: убирает элементы, которых больше нет в базе данных,
+     * и догружает строки, изменённые после отметки снимка, а также строки, которых в снимке нет.
+     *
+     * @return восстановленная коллекция или null, если коллекцию нужно загрузить целиком
+     */
+    private TicketCollection restoreSnapshot(long version) {
+        SnapshotManager.Snapshot snapshot = snapshots.read();
+        if (snapshot == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>();
+        ExecutionStatus idStatus = dbManager.loadTicketIds(ids);
+        if (!idStatus.isSuccess()) {
+            Server.logger.warning("Failed to restore the collection from the snapshot: " + idStatus.getMessage());
+            return null;
+        }
+        List<Ticket> tickets = snapshot.getTickets();
+        List<Long> missing = new ArrayList<>();
+        List<Ticket> kept = keepExisting(tickets, ids, missing);
+        List<Ticket> changed = new ArrayList<>();
+        ExecutionStatus changedStatus = dbManager.loadChangedTickets(snapshot.getChangeMark(), missing, changed);
+        if (!changedStatus.isSuccess()) {
+            Server.logger.warning("Failed to restore the collection from the snapshot: " + changedStatus.getMessage());
+            return null;
+        }
+        Server.logger.info("Restored " + kept.size() + " tickets from the snapshot, dropped " + (tickets.size() - kept.size())
+                + " deleted and reloaded " + changed.size() + " changed tickets");
+        try {
+            return TicketCollection.of(kept, version).withAll(changed);
+        } catch (IllegalArgumentException e) {
+            Server.logger.warning("Failed to restore the collection from the snapshot: duplicate ids");
+            return null;
+        }
+    }
+
+    /**
+     * Сопоставляет элементы снимка с id строк базы данных. Оба списка упорядочены по возрастанию id,
+     * поэтому расхождения находятся за один проход.
+     *
+     * @param tickets элементы снимка
+     * @param ids id строк базы данных
+     * @param missing сюда добавляются id строк, которых нет в снимке
+     * @return элементы снимка, строки которых ещё есть в базе данных
+     */
+    static List<Ticket> keepExisting(List<Ticket> tickets, List<Long> ids, List<Long> missing) {
+        List<Ticket> kept = new ArrayList<>(tickets.size());
+        int i = 0;
+        int j = 0;
+        while (i < tickets.size() || j < ids.size()) {
+            long snapshotId = i < tickets.size() ? tickets.get(i).getId() : Long.MAX_VALUE;
+            long databaseId = j < ids.size() ? ids.get(j) : Long.MAX_VALUE;
+            if (snapshotId == databaseId) {
+                kept.add(tickets.get(i++));
+                j++;
+            } else if (snapshotId < databaseId) {
+                i++; // Элемент удалён из базы данных после снимка
+            } else {
+                missing.add(ids.get(j++));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Сохраняет снимок текущей версии коллекции, если она изменилась с прошлого снимка.
+     * Версия и отметка берутся под блокировкой писателей, поэтому все изменения в базе данных с номером не больше отметки
+     * уже есть в этой версии. Файл пишется после снятия блокировки: версия неизменяема.
+     */
+    private void saveSnapshot() {
+        TicketCollection current;
+        long changeMark;
+        writeLock.lock();
+        try {
+            current = collection.get();
+            if (current.getVersion() == snapshotVersion) {
+                return;
+            }
+            changeMark = dbManager.currentChangeMark();
+        } catch (SQLException e) {
+            Server.logger.warning("Failed to save a collection snapshot: " + e.getMessage());
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            snapshots.write(current, changeMark);
+            snapshotVersion = current.getVersion();
+        } catch (IOException e) {
+            Server.logger.warning("Failed to save a collection snapshot: " + e.getMessage());
         }
     }
 
@@ -225,47 +360,72 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public ExecutionStatus clear(Pair<String, String> user) {
-        lock.writeLock().lock();
+        writeLock.lock();
         try {
             ExecutionStatus accessStatus = dbManager.checkUserPermission(user);
             if (!accessStatus.isSuccess()) {
                 return accessStatus;
             }
+            ExecutionStatus drainStatus = drainJournal();
+            if (!drainStatus.isSuccess()) {
+                return drainStatus;
+            }
             ExecutionStatus clearStatus;
             if (accessStatus.getMessage().equals("USER")) {
                 clearStatus = dbManager.clear(user);
                 if (clearStatus.isSuccess()) {
-                    collection = collection.stream()
-                            .filter(band -> !band.getUser().equals(user.getFirst()))
-                            .collect(Collectors.toCollection(Stack::new));
-                    ticketsMap.entrySet().removeIf(entry -> entry.getValue().getUser().equals(user.getFirst()));
+                    removeTickets(collection.get().ownedBy(user.getFirst()));
                 }
             }
             else {
                 clearStatus = dbManager.clearAll();
                 if (clearStatus.isSuccess()) {
-                    collection.clear();
-                    ticketsMap.clear();
+                    publish(collection.get().emptied());
                 }
             }
             return clearStatus;
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
     @Override
     public ExecutionStatus add(Ticket ticket, Pair<String, String> user) {
-        lock.writeLock().lock();
+        return addIf(ticket, user, current -> true, null);
+    }
+
+    /**
+     * Добавляет элемент, если он меньше наименьшего элемента коллекции.
+     * Сравнение и добавление выполняются под одной блокировкой писателей, поэтому между ними коллекция не меняется.
+     *
+     * @param ticket Элемент для добавления.
+     * @return Статус выполнения добавления.
+     */
+    @Override
+    public ExecutionStatus addIfMin(Ticket ticket, Pair<String, String> user) {
+        return addIf(ticket, user, current -> current.isBelowMin(ticket), "Элемент не является наименьшим в коллекции!");
+    }
+
+    /**
+     * Добавляет элемент, если текущая версия коллекции удовлетворяет условию. Условие проверяется под блокировкой писателей.
+     */
+    private ExecutionStatus addIf(Ticket ticket, Pair<String, String> user, Predicate<TicketCollection> condition, String rejection) {
+        if (journal != null) {
+            return addJournaled(ticket, user, condition, rejection);
+        }
+        writeLock.lock();
         try {
             if ((ticket != null) && ticket.validate()) {
+                if (!condition.test(collection.get())) {
+                    return new ExecutionStatus(true, rejection);
+                }
                 ExecutionStatus addStatus = dbManager.addTicket(ticket, user);
                 int n =0;
                 if (addStatus.isSuccess()) {
-                    ticket.updateId(Long.parseLong(addStatus.getMessage()));
+                    // Владелец в памяти тот же, что и в базе данных, а не присланный клиентом
+                    Ticket added = copyOf(ticket, Long.parseLong(addStatus.getMessage()), ticket.getCreationDate(), user.getFirst());
                     lastSaveDate = LocalDateTime.now();
-                    collection.push(ticket);
-                    ticketsMap.put(ticket.getId(), ticket);
+                    publish(collection.get().with(added));
                     return new ExecutionStatus(true, "Элемент успешно добавлен в коллекцию! Присвоенный id = " + addStatus.getMessage());
                 }
                 return new ExecutionStatus(false, "Произошла ошибка при добавлении коллекции в базу данных!"+n);
@@ -274,29 +434,48 @@ class CollectionManagerMain implements CollectionManager {
         } catch (SQLException e) {
             return new ExecutionStatus(false, "Ошибка при сохранении элемента коллекции в базу данных: " + e.getMessage());
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public ExecutionStatus addAll(List<Ticket> tickets, Pair<String, String> user) {
+        writeLock.lock();
+        try {
+            ExecutionStatus drainStatus = drainJournal();
+            if (!drainStatus.isSuccess()) {
+                return drainStatus;
+            }
+            ExecutionStatus addStatus = dbManager.addTickets(tickets, user);
+            if (addStatus.isSuccess()) { // Коллекция обновляется один раз, после записи всех элементов
+                lastSaveDate = LocalDateTime.now();
+                publish(collection.get().withAll(tickets));
+            }
+            return addStatus;
+        } catch (SQLException e) {
+            return new ExecutionStatus(false, "Ошибка при сохранении элементов коллекции в базу данных: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public ExecutionStatus update(Ticket ticket, Pair<String, String> user) {
-        lock.writeLock().lock();
+        if ((ticket == null) || !ticket.validate()) {
+            return new ExecutionStatus(false, "Элемент коллекции введён неверно!");
+        }
+        if (journal != null) {
+            return updateJournaled(ticket, user);
+        }
+        writeLock.lock();
         try {
             ExecutionStatus updStatus = dbManager.updateTicket(ticket, user);
             if (updStatus.isSuccess()) {
                 lastSaveDate = LocalDateTime.now();
-                collection.stream()
-                        .filter(existingBand -> existingBand.getId().equals(ticket.getId()))
-                        .forEach(existingBand -> {
-                            ticketsMap.remove(existingBand.getId(), existingBand);
-                            existingBand.updateName(ticket.getName());
-                            existingBand.updateCoordinates(ticket.getCoordinates());
-                            existingBand.updatePrice(ticket.getPrice());
-                            existingBand.updateDescription(ticket.getDescription());
-                            existingBand.updateType(ticket.getType());
-                            existingBand.updateEvent(ticket.getEvent());
-                            ticketsMap.put(ticket.getId(), ticket);
-                        });
+                Ticket existingBand = collection.get().get(ticket.getId());
+                if (existingBand != null) {
+                    publish(collection.get().with(copyOf(ticket, existingBand.getId(), existingBand.getCreationDate(), existingBand.getUser())));
+                }
 
             } else {
                 Server.logger.severe("Error updating ticket in database: " + ticket.getName());
@@ -305,7 +484,7 @@ class CollectionManagerMain implements CollectionManager {
         } catch (SQLException e) {
             return new ExecutionStatus(false, "Ошибка при сохранении элемента коллекции в базу данных: " + e.getMessage());
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
@@ -316,16 +495,198 @@ class CollectionManagerMain implements CollectionManager {
      */
     @Override
     public ExecutionStatus removeById(Long elementId, Pair<String, String> user) {
-        lock.writeLock().lock();
+        if (journal != null) {
+            return removeByIdJournaled(elementId, user);
+        }
+        writeLock.lock();
         try {
             ExecutionStatus removeStatus = dbManager.removeById(elementId, user);
             if (removeStatus.isSuccess()) {
-                collection = collection.stream().filter(band -> !band.getId().equals(elementId)).collect(Collectors.toCollection(Stack::new));
-                ticketsMap.remove(elementId);
+                publish(collection.get().without(elementId));
             }
             return removeStatus;
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Добавляет элемент в режиме отложенной записи: id берётся из зарезервированного блока,
+     * а версия коллекции с элементом публикуется и ответ отправляется после сброса записи журнала на диск.
+     */
+    private ExecutionStatus addJournaled(Ticket ticket, Pair<String, String> user, Predicate<TicketCollection> condition, String rejection) {
+        if ((ticket == null) || !ticket.validate()) {
+            return new ExecutionStatus(false, "Элемент коллекции введён неверно!");
+        }
+        long sequence;
+        Ticket added;
+        writeLock.lock();
+        try {
+            if (!condition.test(staged)) {
+                return new ExecutionStatus(true, rejection);
+            }
+            ExecutionStatus accessStatus = dbManager.checkUserPermission(user);
+            if (!accessStatus.isSuccess()) {
+                return accessStatus;
+            }
+            added = copyOf(ticket, journal.nextTicketId(), ticket.getCreationDate(), user.getFirst());
+            sequence = journal.append(WriteBehindJournal.Kind.ADD, added.getId(), added);
+            lastSaveDate = LocalDateTime.now();
+            stage(sequence, staged.with(added));
+        } catch (SQLException | IOException e) {
+            return new ExecutionStatus(false, "Ошибка при сохранении элемента коллекции: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        return awaitJournal(sequence, "Элемент успешно добавлен в коллекцию! Присвоенный id = " + added.getId());
+    }
+
+    /**
+     * Обновляет элемент в режиме отложенной записи. Права проверяются по коллекции в памяти:
+     * пользователь с правами USER может изменять только свои элементы.
+     */
+    private ExecutionStatus updateJournaled(Ticket ticket, Pair<String, String> user) {
+        long sequence;
+        writeLock.lock();
+        try {
+            Ticket existing = staged.get(ticket.getId());
+            ExecutionStatus accessStatus = checkOwnership(existing, user);
+            if (!accessStatus.isSuccess()) {
+                return accessStatus;
+            }
+            sequence = journal.append(WriteBehindJournal.Kind.UPDATE, existing.getId(), ticket);
+            lastSaveDate = LocalDateTime.now();
+            stage(sequence, staged.with(copyOf(ticket, existing.getId(), existing.getCreationDate(), existing.getUser())));
+        } catch (IOException e) {
+            return new ExecutionStatus(false, "Ошибка при сохранении элемента коллекции: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        return awaitJournal(sequence, "Элемент успешно обновлён!");
+    }
+
+    /**
+     * Удаляет элемент в режиме отложенной записи.
+     */
+    private ExecutionStatus removeByIdJournaled(Long elementId, Pair<String, String> user) {
+        long sequence;
+        writeLock.lock();
+        try {
+            Ticket existing = staged.get(elementId);
+            ExecutionStatus accessStatus = checkOwnership(existing, user);
+            if (!accessStatus.isSuccess()) {
+                return accessStatus;
+            }
+            sequence = journal.append(WriteBehindJournal.Kind.REMOVE, elementId, null);
+            lastSaveDate = LocalDateTime.now();
+            stage(sequence, staged.without(elementId));
+        } catch (IOException e) {
+            return new ExecutionStatus(false, "Ошибка при удалении элемента коллекции: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        return awaitJournal(sequence, "Элемент успешно удалён!");
+    }
+
+    /**
+     * Публикует новую версию коллекции, построенную без журнала. Вызывается только под блокировкой писателей,
+     * когда неопубликованных версий нет: операции в обход журнала сначала переносят его в базу данных.
+     */
+    private void publish(TicketCollection next) {
+        staged = next;
+        collection.set(next);
+    }
+
+    /**
+     * Запоминает версию с изменением из журнала. Следующие писатели строят свои версии уже на ней,
+     * а читатели увидят её только после сброса записи на диск. Вызывается под блокировкой писателей.
+     */
+    private void stage(long sequence, TicketCollection next) {
+        staged = next;
+        unpublished.add(new Pair<>(sequence, next));
+    }
+
+    /**
+     * Публикует последнюю версию, все записи журнала которой уже на диске. Если журнал отказал,
+     * версии с отброшенными записями забываются. Вызывается под блокировкой писателей.
+     */
+    private void publishDurable() {
+        boolean failed = journal.isFailed(); // После отказа номер сброшенной записи больше не растёт
+        long durable = journal.getDurableSequence();
+        TicketCollection latest = null;
+        while (!unpublished.isEmpty() && unpublished.peek().getFirst() <= durable) {
+            latest = unpublished.poll().getSecond();
+        }
+        if (latest != null) {
+            collection.set(latest);
+        }
+        if (failed && !unpublished.isEmpty()) {
+            unpublished.clear();
+            staged = collection.get();
+        }
+    }
+
+    /**
+     * Удаляет из коллекции найденные по индексу элементы, не обходя остальные.
+     */
+    private void removeTickets(Collection<Ticket> removed) {
+        List<Long> ids = removed.stream().map(Ticket::getId).toList();
+        publish(collection.get().withoutAll(ids));
+    }
+
+    /**
+     * Создаёт новый объект элемента с полями из fields: опубликованные версии коллекции могут читаться в этот момент,
+     * поэтому существующие элементы не изменяются.
+     */
+    private static Ticket copyOf(Ticket fields, Long id, LocalDateTime creationDate, String owner) {
+        return new TicketBuilder().setId(id).setName(fields.getName()).setCoordinates(fields.getCoordinates())
+                .setCreationDate(creationDate).setPrice(fields.getPrice()).setDescription(fields.getDescription())
+                .setType(fields.getType()).setEvent(fields.getEvent()).setUser(owner).build();
+    }
+
+    private ExecutionStatus checkOwnership(Ticket existing, Pair<String, String> user) {
+        if (existing == null) {
+            return new ExecutionStatus(false, "Элемент с указанным id не найден!");
+        }
+        ExecutionStatus accessStatus = dbManager.checkUserPermission(user);
+        if (accessStatus.isSuccess() && accessStatus.getMessage().equals("USER") && !existing.getUser().equals(user.getFirst())) {
+            return new ExecutionStatus(false, "Пользователь не является владельцем элемента коллекции!");
+        }
+        return accessStatus;
+    }
+
+    /**
+     * Ждёт сброса записи журнала на диск и публикует сохранённые версии. Ожидание идёт без блокировки коллекции,
+     * чтобы один сброс на диск покрывал записи, сделанные несколькими потоками.
+     * Если сброс не удался, изменение не публикуется и не попадает в базу данных.
+     */
+    private ExecutionStatus awaitJournal(long sequence, String successMessage) {
+        ExecutionStatus status;
+        try {
+            journal.awaitDurable(sequence);
+            status = new ExecutionStatus(true, successMessage);
+        } catch (IOException e) {
+            status = new ExecutionStatus(false, "Изменение не сохранено: ошибка при записи журнала изменений: " + e.getMessage());
+        }
+        writeLock.lock();
+        try {
+            publishDurable();
+        } finally {
+            writeLock.unlock();
+        }
+        return status;
+    }
+
+    /**
+     * Перед операциями, которые выполняются в базе данных напрямую, переносит туда отложенные изменения
+     * и публикует версии с ними, чтобы операция строила свою версию на последней. Вызывается под блокировкой писателей.
+     */
+    private ExecutionStatus drainJournal() {
+        if (journal == null) {
+            return new ExecutionStatus(true, "");
         }
+        ExecutionStatus drainStatus = journal.drain();
+        publishDurable(); // Под блокировкой новых записей нет, поэтому все оставшиеся уже на диске или отброшены
+        return drainStatus;
     }
-}
\ No newline at end of file
+}
@@ -4,22 +4,15 @@ import com.lab7.common.models.Ticket;
 import com.lab7.common.models.TicketType;
 import com.lab7.common.utility.ExecutionStatus;
 import com.lab7.common.utility.Pair;
+import com.lab7.server.utility.TicketCollection;
+import com.lab7.server.utility.TicketRange;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.List;
 
 public class CollectionManagerProxy implements CollectionManager {
     private static volatile CollectionManagerProxy instance;
     private final CollectionManagerMain collectionManagerMain = CollectionManagerMain.getInstance();
-    private final Map<Long, Ticket> ticketMap = new HashMap<>();
-    private Stack<Ticket> collection = new Stack<>();
-    private final AtomicBoolean isCacheValid = new AtomicBoolean(false);
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     /**
      * Конструктор класса CollectionManagerProxy.
@@ -43,36 +36,22 @@ public class CollectionManagerProxy implements CollectionManager {
         return instance;
     }
 
-    private void refreshCache() {
-        if (!isCacheValid.get()) {
-            lock.writeLock().lock(); // Блокировка для обновления кэша
-            collection = collectionManagerMain.getCollection();
-            ticketMap.clear();
-            collection.forEach(band -> ticketMap.put(band.getId(), band));
-            isCacheValid.set(true);
-            lock.writeLock().unlock();
-        }
-    }
-
+    /**
+     * Возвращает опубликованную версию коллекции. Версии неизменяемы, поэтому отдельная копия для прокси не нужна.
+     */
     @Override
-    public Stack<Ticket> getTickets() {
-        refreshCache();
-        return collection;
+    public TicketCollection getTickets() {
+        return collectionManagerMain.getCollection();
     }
 
     @Override
     public void sort() {
         collectionManagerMain.sort();
-        isCacheValid.set(false);
     }
 
     @Override
     public ExecutionStatus removeFirst(Pair<String, String> user) {
-        ExecutionStatus status = collectionManagerMain.removeFirst(user);
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.removeFirst(user);
     }
 
     @Override
@@ -86,68 +65,57 @@ public class CollectionManagerProxy implements CollectionManager {
     }
 
     @Override
-    public Stack<Ticket> getCollection() {
-        refreshCache();
-        return collection;
+    public TicketCollection getCollection() {
+        return collectionManagerMain.getCollection();
     }
 
     @Override
     public Ticket getById(Long id) {
-        refreshCache();
-        return ticketMap.get(id);
+        return collectionManagerMain.getById(id);
     }
 
     @Override
     public ExecutionStatus removeAllByGenre(TicketType genre, Pair<String, String> user) {
-        ExecutionStatus status = collectionManagerMain.removeAllByGenre(genre, user);
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.removeAllByGenre(genre, user);
+    }
+
+    @Override
+    public ExecutionStatus removeInRange(TicketRange range, Pair<String, String> user) {
+        return collectionManagerMain.removeInRange(range, user);
     }
 
     @Override
     public ExecutionStatus loadCollection() {
-        ExecutionStatus status = collectionManagerMain.loadCollection();
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.loadCollection();
     }
 
     @Override
     public ExecutionStatus clear(Pair<String, String> user) {
-        ExecutionStatus status = collectionManagerMain.clear(user);
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.clear(user);
     }
 
     @Override
     public ExecutionStatus add(Ticket band, Pair<String, String> user) {
-        ExecutionStatus status = collectionManagerMain.add(band, user);
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.add(band, user);
+    }
+
+    @Override
+    public ExecutionStatus addIfMin(Ticket band, Pair<String, String> user) {
+        return collectionManagerMain.addIfMin(band, user);
+    }
+
+    @Override
+    public ExecutionStatus addAll(List<Ticket> tickets, Pair<String, String> user) {
+        return collectionManagerMain.addAll(tickets, user);
     }
 
     @Override
     public ExecutionStatus update(Ticket band, Pair<String, String> user) {
-        ExecutionStatus status = collectionManagerMain.update(band, user);
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.update(band, user);
     }
 
     @Override
     public ExecutionStatus removeById(Long elementId, Pair<String, String> user) {
-        ExecutionStatus status = collectionManagerMain.removeById(elementId, user);
-        if (status.isSuccess()) {
-            isCacheValid.set(false);
-        }
-        return status;
+        return collectionManagerMain.removeById(elementId, user);
     }
 }
\ No newline at end of file
@@ -1,23 +1,67 @@
 package com.lab7.server.managers;
 
+import com.lab7.common.utility.Frame;
+import com.lab7.common.utility.MessageCodec;
+import com.lab7.common.utility.Pair;
+import com.lab7.common.utility.Response;
+import com.lab7.common.validators.ArgumentValidator;
+import com.lab7.server.utility.AskingCommand;
 import com.lab7.server.utility.Command;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Класс, управляющий регистрацией и получением команд.
  */
 public class CommandManager {
     private final Map<String, Command<?>> commands = new HashMap<>();
+    private ByteBuffer handshakeFrame; // Закодированный список команд для клиентов, пересобирается после регистрации
+    private String handshakeHash;
 
     /**
      * Регистрирует команду.
      * @param commandName имя команды
      * @param command объект команды
      */
-    public void register(String commandName, Command<?> command) {
+    public synchronized void register(String commandName, Command<?> command) {
         commands.put(commandName, command);
+        handshakeFrame = null;
+    }
+
+    /**
+     * Возвращает закодированный кадр со списком команд, который отправляется клиенту при подключении.
+     * Кадр собирается один раз и переиспользуется для всех подключений.
+     * @return буфер с кадром, готовый к чтению; у каждого вызова своя позиция
+     */
+    public synchronized ByteBuffer getHandshakeFrame() {
+        buildHandshake();
+        return handshakeFrame.duplicate();
+    }
+
+    /**
+     * Возвращает хэш списка команд, по которому клиент проверяет свою сохранённую копию.
+     * @return хэш полезной нагрузки кадра со списком команд
+     */
+    public synchronized String getHandshakeHash() {
+        buildHandshake();
+        return handshakeHash;
+    }
+
+    private void buildHandshake() {
+        if (handshakeFrame != null) {
+            return;
+        }
+        Map<String, Pair<ArgumentValidator, Boolean>> commandsData = new TreeMap<>(); // Стабильный порядок - стабильный хэш
+        commands.forEach((name, command) -> {
+            boolean isAskingCommand = AskingCommand.class.isAssignableFrom(command.getClass());
+            commandsData.put(name, new Pair<>(command.getArgumentValidator(), isAskingCommand));
+        });
+        ByteBuffer frame = MessageCodec.encodeResponse(new Response(commandsData));
+        handshakeHash = MessageCodec.digest(frame.slice(Frame.HEADER_SIZE, frame.remaining() - Frame.HEADER_SIZE));
+        handshakeFrame = frame.asReadOnlyBuffer();
     }
 
     /**
@@ -9,27 +9,50 @@ import com.lab7.common.utility.ExecutionStatus;
 import com.lab7.common.utility.Pair;
 import com.lab7.common.utility.PermissionType;
 import com.lab7.server.Server;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import com.lab7.server.utility.ConnectionPool;
+import com.lab7.server.utility.ServerConfig;
+import com.lab7.server.utility.TicketCollection;
+import com.lab7.server.utility.TicketRange;
 import com.lab7.server.utility.Transactional;
 import com.lab7.server.utility.TransactionalProxy;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.DriverManager;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
-import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Класс, управляющий сохранением и загрузкой коллекции музыкальных групп.
  */
 public class DBManager implements DBManagerInterface {
     private static volatile DBManagerInterface instance;
-    private static Connection connection;
+    private static final int IMPORT_BATCH_SIZE = ServerConfig.getInt("import.batchSize", 5000);
+    private static final int LOAD_FETCH_SIZE = Math.max(1, ServerConfig.getInt("load.fetchSize", 10000)); // Строк в одной порции курсора
+    private static final int LOAD_THREADS = ServerConfig.getInt("load.decodeThreads", Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService DECODERS = Executors.newFixedThreadPool(Math.max(1, LOAD_THREADS), task -> {
+        Thread thread = new Thread(task, "load-decoder");
+        thread.setDaemon(true); // Потоки создаются при первой загрузке и не мешают завершению сервера
+        return thread;
+    });
+    private static ConnectionPool pool;
+    private final UserDirectory userDirectory = new UserDirectory();
 
     /**
      * Конструктор для создания объекта DBManager.
@@ -43,8 +66,15 @@ public class DBManager implements DBManagerInterface {
             String user = properties.getProperty("db.user"); // sXXXXXX
             String password = properties.getProperty("db.password"); // пароль из файла .pgpass
 
-            connection = DriverManager.getConnection(url, user, password);
-            Server.logger.info("Connected to database successfully");
+            int poolSize = Integer.parseInt(properties.getProperty("db.pool.size", "10"));
+            long validationInterval = Long.parseLong(properties.getProperty("db.pool.validationIntervalMillis", "30000"));
+            long acquireTimeout = Long.parseLong(properties.getProperty("db.pool.acquireTimeoutMillis", "30000"));
+            Properties connectionProperties = new Properties();
+            connectionProperties.setProperty("user", user);
+            connectionProperties.setProperty("password", password);
+            pool = new ConnectionPool(url, connectionProperties, poolSize, validationInterval, acquireTimeout);
+            pool.getConnection().close(); // Сразу проверяем, что база данных доступна
+            Server.logger.info("Connected to database successfully, pool size " + poolSize);
         } catch (SQLException e) {
             Server.logger.severe("Failed to connect to database: " + e.getMessage());
         } catch (IOException e) {
@@ -58,7 +88,7 @@ public class DBManager implements DBManagerInterface {
             synchronized (DBManager.class) {
                 if (instance == null) {
                     instance = new DBManager();
-                    instance = TransactionalProxy.createProxy(instance, connection); // оборачиваем в прокси для поддержки транзакций
+                    instance = TransactionalProxy.createProxy(instance, pool); // оборачиваем в прокси для поддержки транзакций
                 }
             }
         }
@@ -67,34 +97,48 @@ public class DBManager implements DBManagerInterface {
 
     public ExecutionStatus addUser(Pair<String, String> user) {
         String query = "INSERT INTO users (username, password) VALUES (?, ?);";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
             p.setString(1, user.getFirst());
             p.setString(2, user.getSecond());
             p.executeUpdate();
         } catch (SQLException | NullPointerException e) {
             return new ExecutionStatus(false, "Ошибка при добавлении пользователя в базу данных: " + e.getMessage());
+        } finally {
+            if (user != null) {
+                userDirectory.invalidate(user.getFirst());
+            }
         }
         return new ExecutionStatus(true, "User registered successfully!");
     }
 
-    private ExecutionStatus checkUser(Pair<String, String> user) {
-        String query = "SELECT EXISTS(SELECT 1 FROM users WHERE username = ?);";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
-            p.setString(1, user.getFirst());
+    /**
+     * Находит пользователя в кэше, а если его там нет - в базе данных, и запоминает результат.
+     *
+     * @param username имя пользователя
+     * @return сведения о пользователе или null, если такого пользователя нет
+     */
+    private UserDirectory.Entry findUser(String username) throws SQLException {
+        UserDirectory.Entry entry = userDirectory.get(username);
+        if (entry != null) {
+            return entry;
+        }
+        long stamp = userDirectory.stamp();
+        String query = "SELECT id, password, permissions FROM users WHERE username = ?;";
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
+            p.setString(1, username);
             ResultSet res = p.executeQuery();
-            if (res.next() && res.getBoolean(1)) {
-                return new ExecutionStatus(true, "Пользователь успешно найден!");
-            } else {
-                return new ExecutionStatus(false, "Пользователь не найден!");
+            if (!res.next()) {
+                return null;
             }
-        } catch (SQLException | NullPointerException e) {
-            return new ExecutionStatus(false, "Ошибка при проверке пользователя в базе данных: " + e.getMessage());
+            entry = new UserDirectory.Entry(res.getLong("id"), res.getString("password"), PermissionType.valueOf(res.getString("permissions")));
         }
+        userDirectory.put(username, entry, stamp);
+        return entry;
     }
 
     public ExecutionStatus showUserList(Pair<String, String> user) {
         String query = "SELECT username, permissions FROM users;";
-        try (PreparedStatement p = connection.prepareStatement(query); ResultSet res = p.executeQuery()) {
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query); ResultSet res = p.executeQuery()) {
             StringBuilder stringBuilder = new StringBuilder();
             stringBuilder.append("Список пользователей:\n");
             while (res.next()) {
@@ -107,37 +151,28 @@ public class DBManager implements DBManagerInterface {
     }
 
     public ExecutionStatus checkPassword(Pair<String, String> user) {
-        ExecutionStatus checkUserStatus = checkUser(user);
-        if (checkUserStatus.isSuccess()) {
-            String query = "SELECT password FROM users WHERE username = ?;";
-            try (PreparedStatement p = connection.prepareStatement(query)) {
-                p.setString(1, user.getFirst());
-                ResultSet res = p.executeQuery();
-                if (res.next()) {
-                    String password = res.getString("password");
-                    boolean match = password.equals(user.getSecond());
-                    if (match) {
-                        return new ExecutionStatus(true, "Login successful!");
-                    } else {
-                        return new ExecutionStatus(false, "Введён неверный пароль!");
-                    }
-                } else {
-                    return new ExecutionStatus(false, "Пользователь не найден!");
-                }
-            } catch (SQLException | NullPointerException e) {
-                return new ExecutionStatus(false, "Ошибка при проверке пользователя в базе данных: " + e.getMessage());
+        try {
+            UserDirectory.Entry entry = findUser(user.getFirst());
+            if (entry == null) {
+                return new ExecutionStatus(false, "Пользователь не найден!");
             }
-        } else {
-            return new ExecutionStatus(false, checkUserStatus.getMessage());
+            if (entry.getPasswordHash().equals(user.getSecond())) {
+                return new ExecutionStatus(true, "Login successful!");
+            } else {
+                return new ExecutionStatus(false, "Введён неверный пароль!");
+            }
+        } catch (SQLException | NullPointerException e) {
+            return new ExecutionStatus(false, "Ошибка при проверке пользователя в базе данных: " + e.getMessage());
         }
     }
 
     public ExecutionStatus updateUserPermissions(String username, PermissionType permission) {
         String query = "UPDATE users SET permissions = ? WHERE username = ?;";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
             p.setString(1, permission.name());
             p.setString(2, username);
             int affectedRows = p.executeUpdate();
+            userDirectory.invalidate(username);
             if (affectedRows > 0) {
                 return new ExecutionStatus(true, "Права пользователя " + username + " успешно обновлены!");
             } else {
@@ -149,13 +184,10 @@ public class DBManager implements DBManagerInterface {
     }
 
     public ExecutionStatus checkUserPermission(Pair<String, String> user) {
-        String query = "SELECT permissions FROM users WHERE username = ?;";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
-            p.setString(1, user.getFirst());
-            ResultSet res = p.executeQuery();
-            if (res.next()) {
-                String permission = res.getString("permissions");
-                return new ExecutionStatus(true, permission);
+        try {
+            UserDirectory.Entry entry = findUser(user.getFirst());
+            if (entry != null) {
+                return new ExecutionStatus(true, entry.getPermission().name());
             } else {
                 return new ExecutionStatus(false, "Пользователь не найден!");
             }
@@ -165,9 +197,13 @@ public class DBManager implements DBManagerInterface {
     }
 
     public ExecutionStatus clear(Pair<String, String> user) {
-        String query = "DELETE FROM tickets WHERE user_id IN (SELECT id FROM users WHERE username = ?);";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
-            p.setString(1, user.getFirst());
+        String query = "DELETE FROM tickets WHERE user_id = ?;";
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
+            UserDirectory.Entry entry = findUser(user.getFirst());
+            if (entry == null) {
+                return new ExecutionStatus(false, "Пользователь не найден!");
+            }
+            p.setLong(1, entry.getId());
             int affectedRows = p.executeUpdate();
             if (affectedRows > 0) {
                 return new ExecutionStatus(true, "Успешно удалено " + affectedRows + " элементов пользователя " + user.getFirst() + "!");
@@ -181,7 +217,7 @@ public class DBManager implements DBManagerInterface {
 
     public ExecutionStatus clearAll() {
         String query = "TRUNCATE tickets CASCADE;";
-        try (Statement stmt = connection.createStatement()) {
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
             stmt.executeUpdate(query);
             return new ExecutionStatus(true, "Коллекция успешно очищена!");
         } catch (SQLException e) {
@@ -190,20 +226,26 @@ public class DBManager implements DBManagerInterface {
     }
 
     public ExecutionStatus removeById(Long id, Pair<String, String> user) {
-        ExecutionStatus accessStatus = checkUserPermission(user);
-        if (! accessStatus.isSuccess()) {
-            return accessStatus;
+        UserDirectory.Entry entry;
+        try {
+            entry = findUser(user.getFirst());
+        } catch (SQLException | NullPointerException e) {
+            return new ExecutionStatus(false, "Ошибка при проверке прав пользователя в базе данных: " + e.getMessage());
+        }
+        if (entry == null) {
+            return new ExecutionStatus(false, "Пользователь не найден!");
         }
+        boolean ownOnly = entry.getPermission() == PermissionType.USER;
         String query;
-        if (accessStatus.getMessage().equals("USER")) {
-            query = "DELETE FROM tickets WHERE id = ? AND user_id IN (SELECT id FROM users WHERE username = ?);";
+        if (ownOnly) {
+            query = "DELETE FROM tickets WHERE id = ? AND user_id = ?;";
         } else {
             query = "DELETE FROM tickets WHERE id = ?;";
         }
-        try (PreparedStatement p = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
             p.setLong(1, id);
-            if (accessStatus.getMessage().equals("USER")) {
-                p.setString(2, user.getFirst());
+            if (ownOnly) {
+                p.setLong(2, entry.getId());
             }
             int affectedRows = p.executeUpdate();
             if (affectedRows > 0) {
@@ -217,10 +259,14 @@ public class DBManager implements DBManagerInterface {
     }
 
     public ExecutionStatus removeAllByGenre(TicketType type, Pair<String, String> user) {
-        String query = "DELETE FROM tickets WHERE genre_id = ? AND user_id IN (SELECT id FROM users WHERE username = ?);";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
+        String query = "DELETE FROM tickets WHERE type_id = ? AND user_id = ?;";
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
+            UserDirectory.Entry entry = findUser(user.getFirst());
+            if (entry == null) {
+                return new ExecutionStatus(false, "Пользователь не найден!");
+            }
             p.setLong(1, type.ordinal() + 1);
-            p.setString(2, user.getFirst());
+            p.setLong(2, entry.getId());
             int affectedRows = p.executeUpdate();
             if (affectedRows > 0) {
                 return new ExecutionStatus(true, "Успешно удалено " + affectedRows + " элементов с жанром " + type + "!");
@@ -233,8 +279,8 @@ public class DBManager implements DBManagerInterface {
     }
 
     public ExecutionStatus removeAllByGenre(TicketType type) {
-        String query = "DELETE FROM tickets WHERE genre_id = ?;";
-        try (PreparedStatement p = connection.prepareStatement(query)) {
+        String query = "DELETE FROM tickets WHERE type_id = ?;";
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
             p.setLong(1, type.ordinal() + 1);
             int affectedRows = p.executeUpdate();
             if (affectedRows > 0) {
@@ -247,43 +293,69 @@ public class DBManager implements DBManagerInterface {
         }
     }
 
-    @Transactional
-    public ExecutionStatus addTicket(Ticket ticket, Pair<String, String> user) throws SQLException {
-        // Запись координат
-        int coordinatesId = - 1;
-        String insertCoordinates = "INSERT INTO coordinates (x, y) VALUES (?, ?) RETURNING id";
-        try (PreparedStatement coordinatesStmt = connection.prepareStatement(insertCoordinates)) {
-            coordinatesStmt.setDouble(1, ticket.getCoordinates().getX());
-            coordinatesStmt.setFloat(2, ticket.getCoordinates().getY());
-            ResultSet rs = coordinatesStmt.executeQuery();
-            if (rs.next()) {
-                coordinatesId = rs.getInt("id");
-            }
+    /**
+     * Удаляет все элементы диапазона одним запросом. Права те же, что у removeById: пользователь с правами USER удаляет только свои элементы.
+     *
+     * @param range диапазон по цене или id
+     * @param user пользователь
+     * @param removedIds сюда добавляются id удалённых элементов
+     * @return статус выполнения
+     */
+    public ExecutionStatus removeInRange(TicketRange range, Pair<String, String> user, Collection<Long> removedIds) {
+        UserDirectory.Entry entry;
+        try {
+            entry = findUser(user.getFirst());
+        } catch (SQLException | NullPointerException e) {
+            return new ExecutionStatus(false, "Ошибка при проверке прав пользователя в базе данных: " + e.getMessage());
         }
-
-        // Запись мероприятия
-        int eventId = - 1;
-        String insertEvent = "INSERT INTO event (name, time) VALUES (?, ?) RETURNING id";
-        try (PreparedStatement EventStmt = connection.prepareStatement(insertEvent)) {
-            EventStmt.setString(1, ticket.getEvent().getName());
-            EventStmt.setString(2, ticket.getEvent().getTime());
-            ResultSet rs = EventStmt.executeQuery();
-            if (rs.next()) {
-                eventId = rs.getInt("id");
+        if (entry == null) {
+            return new ExecutionStatus(false, "Пользователь не найден!");
+        }
+        boolean ownOnly = entry.getPermission() == PermissionType.USER;
+        String query = "DELETE FROM tickets WHERE " + range.toSqlCondition() + (ownOnly ? " AND user_id = ?" : "") + " RETURNING id;";
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
+            p.setLong(1, range.getBound());
+            if (ownOnly) {
+                p.setLong(2, entry.getId());
             }
+            try (ResultSet rs = p.executeQuery()) {
+                while (rs.next()) {
+                    removedIds.add(rs.getLong(1));
+                }
+            }
+            if (removedIds.isEmpty()) {
+                return new ExecutionStatus(false, "Доступные для удаления элементы, у которых " + range + ", не найдены!");
+            }
+            return new ExecutionStatus(true, "Успешно удалено " + removedIds.size() + " элементов, у которых " + range + "!");
+        } catch (SQLException | NullPointerException e) {
+            return new ExecutionStatus(false, "Ошибка при удалении элементов коллекции из базы данных: " + e.getMessage());
         }
+    }
 
-        // Запись самой музыкальной группы
-        String insertTicket = "INSERT INTO tickets (name, coordinates_id, creation_date, price, description, type_id, event_id, user_id) " + "VALUES (?, ?,  ?, ?, ?, ?, ?, (SELECT id FROM users WHERE username = ?)) RETURNING id";
-        try (PreparedStatement ticketStmt = connection.prepareStatement(insertTicket)) {
-            ticketStmt.setString(1, ticket.getName());
-            ticketStmt.setInt(2, coordinatesId);
-            ticketStmt.setTimestamp(3, Timestamp.valueOf(ticket.getCreationDate()));
-            ticketStmt.setLong(4, ticket.getPrice());
-            ticketStmt.setString(5, ticket.getDescription());
-            ticketStmt.setInt(6, ticket.getType().ordinal() + 1);
-            ticketStmt.setInt(7, eventId);
-            ticketStmt.setString(8, user.getFirst());
+    /**
+     * Добавляет элемент одним запросом: координаты, мероприятие и сам элемент записываются цепочкой CTE,
+     * поэтому запрос выполняется атомарно и за одно обращение к базе данных.
+     */
+    public ExecutionStatus addTicket(Ticket ticket, Pair<String, String> user) throws SQLException {
+        UserDirectory.Entry owner = findUser(user.getFirst());
+        if (owner == null) {
+            return new ExecutionStatus(false, "Пользователь не найден!");
+        }
+        String insertTicket = "WITH new_coordinates AS (INSERT INTO coordinates (x, y) VALUES (?, ?) RETURNING id), " +
+                "new_event AS (INSERT INTO event (name, time) VALUES (?, ?) RETURNING id) " +
+                "INSERT INTO tickets (name, coordinates_id, creation_date, price, description, type_id, event_id, user_id) " +
+                "SELECT ?, new_coordinates.id, ?, ?, ?, ?, new_event.id, ? FROM new_coordinates, new_event RETURNING id";
+        try (Connection connection = pool.getConnection(); PreparedStatement ticketStmt = connection.prepareStatement(insertTicket)) {
+            ticketStmt.setDouble(1, ticket.getCoordinates().getX());
+            ticketStmt.setFloat(2, ticket.getCoordinates().getY());
+            ticketStmt.setString(3, ticket.getEvent().getName());
+            ticketStmt.setString(4, ticket.getEvent().getTime());
+            ticketStmt.setString(5, ticket.getName());
+            ticketStmt.setTimestamp(6, Timestamp.valueOf(ticket.getCreationDate()));
+            ticketStmt.setLong(7, ticket.getPrice());
+            ticketStmt.setString(8, ticket.getDescription());
+            ticketStmt.setInt(9, ticket.getType().ordinal() + 1);
+            ticketStmt.setLong(10, owner.getId());
             ResultSet rs = ticketStmt.executeQuery();
             if (rs.next()) {
                 return new ExecutionStatus(true, rs.getString("id"));
@@ -293,74 +365,295 @@ public class DBManager implements DBManagerInterface {
         }
     }
 
+    /**
+     * Добавляет много элементов за одну транзакцию.
+     * Элементы записываются частями по import.batchSize штук: для каждой части одним запросом резервируются id
+     * во всех трёх таблицах, после чего координаты, мероприятия и сами элементы передаются командой COPY.
+     * Присвоенные id записываются в переданные элементы.
+     *
+     * @param tickets элементы для добавления
+     * @param user пользователь, которому будут принадлежать элементы
+     * @return статус выполнения; при ошибке транзакция откатывается целиком
+     */
     @Transactional
-    public ExecutionStatus updateTicket(Ticket ticket, Pair<String, String> user) throws SQLException {
-        int coordinatesId;
-        int eventId;
-
-        ExecutionStatus accessStatus = checkUserPermission(user);
-        if (! accessStatus.isSuccess()) {
-            return accessStatus;
+    public ExecutionStatus addTickets(List<Ticket> tickets, Pair<String, String> user) throws SQLException {
+        UserDirectory.Entry owner = findUser(user.getFirst());
+        if (owner == null) {
+            return new ExecutionStatus(false, "Пользователь не найден!");
         }
-        String updateBandQuery;
-        if (accessStatus.getMessage().equals("USER")) {
-            updateBandQuery = "UPDATE tickets SET name = ?, price = ?,  description = ?, type_id = ? WHERE id = ? AND user_id IN (SELECT id FROM users WHERE username = ?) RETURNING coordinates_id, event_id";
-        } else {
-            updateBandQuery = "UPDATE tickets SET name = ?, price = ?, description = ?, type_id = ? WHERE id = ? RETURNING coordinates_id, event_id";
+        String reserveIds = "SELECT nextval(pg_get_serial_sequence('coordinates', 'id')), " +
+                "nextval(pg_get_serial_sequence('event', 'id')), " +
+                "nextval(pg_get_serial_sequence('tickets', 'id')) FROM generate_series(1, ?)";
+        try (Connection connection = pool.getConnection(); PreparedStatement idsStmt = connection.prepareStatement(reserveIds)) {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            for (int from = 0; from < tickets.size(); from += IMPORT_BATCH_SIZE) {
+                List<Ticket> chunk = tickets.subList(from, Math.min(tickets.size(), from + IMPORT_BATCH_SIZE));
+                long[] ids = new long[chunk.size() * 3];
+                idsStmt.setInt(1, chunk.size());
+                try (ResultSet rs = idsStmt.executeQuery()) {
+                    for (int i = 0; rs.next(); i++) {
+                        ids[3 * i] = rs.getLong(1);
+                        ids[3 * i + 1] = rs.getLong(2);
+                        ids[3 * i + 2] = rs.getLong(3);
+                    }
+                }
+                StringBuilder coordinatesRows = new StringBuilder();
+                StringBuilder eventRows = new StringBuilder();
+                StringBuilder ticketRows = new StringBuilder();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Ticket ticket = chunk.get(i);
+                    coordinatesRows.append(ids[3 * i]).append('\t').append(ticket.getCoordinates().getX())
+                            .append('\t').append(ticket.getCoordinates().getY()).append('\n');
+                    eventRows.append(ids[3 * i + 1]).append('\t');
+                    appendCopyValue(eventRows, ticket.getEvent().getName()).append('\t');
+                    appendCopyValue(eventRows, ticket.getEvent().getTime()).append('\n');
+                    ticketRows.append(ids[3 * i + 2]).append('\t');
+                    appendCopyValue(ticketRows, ticket.getName()).append('\t').append(ids[3 * i]).append('\t')
+                            .append(Timestamp.valueOf(ticket.getCreationDate())).append('\t');
+                    appendCopyValue(ticketRows, ticket.getPrice() == null ? null : ticket.getPrice().toString()).append('\t');
+                    appendCopyValue(ticketRows, ticket.getDescription()).append('\t')
+                            .append(ticket.getType().ordinal() + 1).append('\t').append(ids[3 * i + 1]).append('\t')
+                            .append(owner.getId()).append('\n');
+                }
+                copyManager.copyIn("COPY coordinates (id, x, y) FROM STDIN", new StringReader(coordinatesRows.toString()));
+                copyManager.copyIn("COPY event (id, name, time) FROM STDIN", new StringReader(eventRows.toString()));
+                copyManager.copyIn("COPY tickets (id, name, coordinates_id, creation_date, price, description, type_id, event_id, user_id) FROM STDIN",
+                        new StringReader(ticketRows.toString()));
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).updateId(ids[3 * i + 2]);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Ошибка передачи данных в базу данных: " + e.getMessage(), e);
         }
+        return new ExecutionStatus(true, "Добавлено элементов: " + tickets.size());
+    }
 
-        String checkQuery = "SELECT COUNT(*) FROM tickets WHERE id = ?;";
-        // Обновление самой музыкальной группы
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkQuery); PreparedStatement ticketStmt = connection.prepareStatement(updateBandQuery)) {
-            checkStmt.setLong(1, ticket.getId());
-            ResultSet checkResult = checkStmt.executeQuery();
-            if (checkResult.next() && checkResult.getInt(1) == 0) {
-                return new ExecutionStatus(false, "Элемент с указанным id не найден!");
+    /**
+     * Дописывает значение в формате текстового COPY: null - \\N, спецсимволы экранируются обратной косой чертой.
+     */
+    private static StringBuilder appendCopyValue(StringBuilder row, String value) {
+        if (value == null) {
+            return row.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> row.append("\\\\");
+                case '\t' -> row.append("\\t");
+                case '\n' -> row.append("\\n");
+                case '\r' -> row.append("\\r");
+                default -> row.append(c);
             }
+        }
+        return row;
+    }
 
-            ticketStmt.setString(1, ticket.getName());
-            ticketStmt.setLong(2, ticket.getPrice());
-            ticketStmt.setString(3, ticket.getDescription());
-            ticketStmt.setInt(4, ticket.getType().ordinal() + 1);
-            ticketStmt.setLong(5, ticket.getId());
-            if (accessStatus.getMessage().equals("USER")) {
-                ticketStmt.setString(6, user.getFirst());
+    /**
+     * Обновляет элемент одним запросом: элемент, его координаты и мероприятие обновляются цепочкой CTE.
+     * Основная часть запроса видит таблицу до изменений и сообщает, существовал ли элемент и был ли он обновлён.
+     */
+    public ExecutionStatus updateTicket(Ticket ticket, Pair<String, String> user) throws SQLException {
+        UserDirectory.Entry owner = findUser(user.getFirst());
+        if (owner == null) {
+            return new ExecutionStatus(false, "Пользователь не найден!");
+        }
+        boolean ownOnly = owner.getPermission() == PermissionType.USER;
+        String updateBandQuery = "WITH updated AS (UPDATE tickets SET name = ?, price = ?, description = ?, type_id = ? " +
+                (ownOnly ? "WHERE id = ? AND user_id = ? " : "WHERE id = ? ") +
+                "RETURNING coordinates_id, event_id), " +
+                "updated_coordinates AS (UPDATE coordinates SET x = ?, y = ? FROM updated WHERE coordinates.id = updated.coordinates_id), " +
+                "updated_event AS (UPDATE event SET name = ?, time = ? FROM updated WHERE event.id = updated.event_id) " +
+                "SELECT EXISTS(SELECT 1 FROM tickets WHERE id = ?) AS found, (SELECT COUNT(*) FROM updated) AS updated_rows";
+        try (Connection connection = pool.getConnection(); PreparedStatement ticketStmt = connection.prepareStatement(updateBandQuery)) {
+            int index = 1;
+            ticketStmt.setString(index++, ticket.getName());
+            ticketStmt.setLong(index++, ticket.getPrice());
+            ticketStmt.setString(index++, ticket.getDescription());
+            ticketStmt.setInt(index++, ticket.getType().ordinal() + 1);
+            ticketStmt.setLong(index++, ticket.getId());
+            if (ownOnly) {
+                ticketStmt.setLong(index++, owner.getId());
             }
+            ticketStmt.setDouble(index++, ticket.getCoordinates().getX());
+            ticketStmt.setFloat(index++, ticket.getCoordinates().getY());
+            ticketStmt.setString(index++, ticket.getEvent().getName());
+            ticketStmt.setString(index++, ticket.getEvent().getTime());
+            ticketStmt.setLong(index, ticket.getId());
             ResultSet rs = ticketStmt.executeQuery();
-            if (rs.next()) {
-                coordinatesId = rs.getInt("coordinates_id");
-                eventId = rs.getInt("event_id");
-            } else {
+            if (!rs.next()) {
+                throw new SQLException();
+            }
+            if (!rs.getBoolean("found")) {
+                return new ExecutionStatus(false, "Элемент с указанным id не найден!");
+            }
+            if (rs.getInt("updated_rows") == 0) {
                 return new ExecutionStatus(false, "Пользователь не является владельцем элемента коллекции!");
             }
         }
+        return new ExecutionStatus(true, "Элемент успешно обновлён!");
+    }
 
-        // Обновление координат
-        String updateCoordinates = "UPDATE coordinates SET x = ?, y = ? WHERE id = ?";
-        try (PreparedStatement coordinatesStmt = connection.prepareStatement(updateCoordinates)) {
-            coordinatesStmt.setDouble(1, ticket.getCoordinates().getX());
-            coordinatesStmt.setFloat(2, ticket.getCoordinates().getY());
-            coordinatesStmt.setInt(3, coordinatesId);
-            coordinatesStmt.executeUpdate();
+    /**
+     * Резервирует id для новых элементов, не создавая самих элементов.
+     *
+     * @param count сколько id нужно
+     * @return зарезервированные id в порядке возрастания
+     */
+    public List<Long> reserveTicketIds(int count) throws SQLException {
+        String query = "SELECT nextval(pg_get_serial_sequence('tickets', 'id')) FROM generate_series(1, ?);";
+        List<Long> ids = new ArrayList<>(count);
+        try (Connection connection = pool.getConnection(); PreparedStatement p = connection.prepareStatement(query)) {
+            p.setInt(1, count);
+            ResultSet res = p.executeQuery();
+            while (res.next()) {
+                ids.add(res.getLong(1));
+            }
         }
+        return ids;
+    }
 
-        // Обновление студии
-        String insertEvent = "UPDATE event SET name = ?, time = ? WHERE id = ?";
-        try (PreparedStatement eventStmt = connection.prepareStatement(insertEvent)) {
-            eventStmt.setString(1, ticket.getEvent().getName());
-            eventStmt.setString(2, ticket.getEvent().getTime());
-            eventStmt.setInt(3, eventId);
-            eventStmt.executeUpdate();
+    /**
+     * Переносит в базу данных изменения из журнала отложенной записи одной транзакцией.
+     * Права пользователей к этому моменту уже проверены. Добавления выполняются с id, выданным журналом, и пропускаются,
+     * если элемент уже есть, поэтому одну и ту же пачку можно применить повторно.
+     * Добавления выполняются раньше обновлений и удалений: изменить или удалить элемент можно только после его добавления.
+     *
+     * @param mutations изменения в порядке их внесения в журнал
+     * @return статус выполнения; при ошибке транзакция откатывается целиком
+     */
+    @Transactional
+    public ExecutionStatus applyJournal(List<WriteBehindJournal.Mutation> mutations) throws SQLException {
+        String insertTicket = "WITH new_coordinates AS (INSERT INTO coordinates (x, y) SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM tickets WHERE id = ?) RETURNING id), " +
+                "new_event AS (INSERT INTO event (name, time) SELECT ?, ? FROM new_coordinates RETURNING id) " +
+                "INSERT INTO tickets (id, name, coordinates_id, creation_date, price, description, type_id, event_id, user_id) " +
+                "SELECT ?, ?, new_coordinates.id, ?, ?, ?, ?, new_event.id, ? FROM new_coordinates, new_event";
+        String updateTicket = "WITH updated AS (UPDATE tickets SET name = ?, price = ?, description = ?, type_id = ? WHERE id = ? " +
+                "RETURNING coordinates_id, event_id), " +
+                "updated_coordinates AS (UPDATE coordinates SET x = ?, y = ? FROM updated WHERE coordinates.id = updated.coordinates_id) " +
+                "UPDATE event SET name = ?, time = ? FROM updated WHERE event.id = updated.event_id";
+        String deleteTicket = "DELETE FROM tickets WHERE id = ?;";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement insertStmt = connection.prepareStatement(insertTicket);
+             PreparedStatement updateStmt = connection.prepareStatement(updateTicket);
+             PreparedStatement deleteStmt = connection.prepareStatement(deleteTicket)) {
+            for (WriteBehindJournal.Mutation mutation : mutations) {
+                Ticket ticket = mutation.getTicket();
+                switch (mutation.getKind()) {
+                    case ADD -> {
+                        UserDirectory.Entry owner = findUser(ticket.getUser());
+                        if (owner == null) {
+                            throw new SQLException("Пользователь " + ticket.getUser() + " не найден");
+                        }
+                        insertStmt.setDouble(1, ticket.getCoordinates().getX());
+                        insertStmt.setFloat(2, ticket.getCoordinates().getY());
+                        insertStmt.setLong(3, mutation.getTicketId());
+                        insertStmt.setString(4, ticket.getEvent().getName());
+                        insertStmt.setString(5, ticket.getEvent().getTime());
+                        insertStmt.setLong(6, mutation.getTicketId());
+                        insertStmt.setString(7, ticket.getName());
+                        insertStmt.setTimestamp(8, Timestamp.valueOf(ticket.getCreationDate()));
+                        insertStmt.setLong(9, ticket.getPrice());
+                        insertStmt.setString(10, ticket.getDescription());
+                        insertStmt.setInt(11, ticket.getType().ordinal() + 1);
+                        insertStmt.setLong(12, owner.getId());
+                        insertStmt.addBatch();
+                    }
+                    case UPDATE -> {
+                        updateStmt.setString(1, ticket.getName());
+                        updateStmt.setLong(2, ticket.getPrice());
+                        updateStmt.setString(3, ticket.getDescription());
+                        updateStmt.setInt(4, ticket.getType().ordinal() + 1);
+                        updateStmt.setLong(5, mutation.getTicketId());
+                        updateStmt.setDouble(6, ticket.getCoordinates().getX());
+                        updateStmt.setFloat(7, ticket.getCoordinates().getY());
+                        updateStmt.setString(8, ticket.getEvent().getName());
+                        updateStmt.setString(9, ticket.getEvent().getTime());
+                        updateStmt.addBatch();
+                    }
+                    case REMOVE -> {
+                        deleteStmt.setLong(1, mutation.getTicketId());
+                        deleteStmt.addBatch();
+                    }
+                }
+            }
+            insertStmt.executeBatch();
+            updateStmt.executeBatch();
+            deleteStmt.executeBatch();
         }
-        return new ExecutionStatus(true, "Элемент успешно обновлён!");
+        return new ExecutionStatus(true, "Изменения из журнала сохранены: " + mutations.size());
     }
 
     /**
      * Загружает коллекцию музыкальных групп из базы данных.
+     * Результат запроса читается через курсор порциями по load.fetchSize строк, поэтому драйвер не держит в памяти весь результат.
+     * Поток чтения только извлекает значения столбцов (ResultSet нельзя читать из нескольких потоков);
+     * элементы порций собирают и раскладывают по индексам load.decodeThreads потоков, а части коллекции добавляются в порядке запроса.
+     *
+     * @param fragments сюда добавляются части коллекции для {@link TicketCollection#merge}
+     */
+    public ExecutionStatus loadCollection(List<TicketCollection.Fragment> fragments) {
+        return loadTickets("", p -> {}, TicketCollection::fragment, fragments::add);
+    }
+
+    /**
+     * Загружает элементы, изменённые или добавленные после отметки, а также элементы с указанными id.
+     *
+     * @param changeMark номер изменения, после которого нужны строки
+     * @param ids id элементов, которые нужно загрузить независимо от номера изменения
+     * @param collection сюда добавляются элементы в порядке возрастания id
+     * @return статус выполнения
+     */
+    public ExecutionStatus loadChangedTickets(long changeMark, List<Long> ids, Collection<Ticket> collection) {
+        return loadTickets("WHERE tickets.change_seq > ? OR tickets.id = ANY (?) ", p -> {
+            p.setLong(1, changeMark);
+            p.setArray(2, p.getConnection().createArrayOf("bigint", ids.toArray()));
+        }, Function.identity(), collection::addAll);
+    }
+
+    /**
+     * Загружает id всех элементов по возрастанию. Читается только индекс первичного ключа, порциями по load.fetchSize.
+     *
+     * @param ids сюда добавляются id
+     * @return статус выполнения
+     */
+    public ExecutionStatus loadTicketIds(List<Long> ids) {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement p = connection.prepareStatement("SELECT id FROM tickets ORDER BY id;")) {
+                p.setFetchSize(LOAD_FETCH_SIZE);
+                try (ResultSet res = p.executeQuery()) {
+                    while (res.next()) {
+                        ids.add(res.getLong(1));
+                    }
+                }
+            }
+            return new ExecutionStatus(true, "Загружено id: " + ids.size());
+        } catch (SQLException e) {
+            return new ExecutionStatus(false, "Произошла ошибка при чтении id элементов из базы данных!" + e);
+        }
+    }
+
+    /**
+     * Возвращает наибольший номер изменения среди строк таблицы tickets.
+     * Все изменения с номером не больше возвращённого уже выполнены в базе данных.
      *
-     * @param collection коллекция музыкальных групп
+     * @return номер изменения или 0, если таблица пуста
+     * @throws SQLException если не удалось выполнить запрос
      */
-    public ExecutionStatus loadCollection(Stack<Ticket> collection) {
+    public long currentChangeMark() throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement();
+             ResultSet res = stmt.executeQuery("SELECT COALESCE(MAX(change_seq), 0) FROM tickets;")) {
+            res.next();
+            return res.getLong(1);
+        }
+    }
+
+    /**
+     * Загружает элементы, подходящие под условие, через курсор. Элементы каждой порции собираются и обрабатываются
+     * функцией prepare в общем пуле потоков загрузки, а результаты передаются в sink в порядке запроса.
+     */
+    private <T> ExecutionStatus loadTickets(String condition, ParameterSetter parameters, Function<List<Ticket>, T> prepare, Consumer<T> sink) {
         String query = "SELECT tickets.id       AS id, " +
                 "tickets.name                   AS ticket_name, " +
                 "coordinates.x                      AS coordinates_x, " +
@@ -376,17 +669,90 @@ public class DBManager implements DBManagerInterface {
                 "JOIN coordinates ON tickets.coordinates_id = coordinates.id " +
                 "JOIN event ON tickets.event_id = event.id " +
                 "JOIN type ON tickets.type_id = type.id " +
-                "JOIN users ON tickets.user_id = users.id;";
-        try (PreparedStatement p = connection.prepareStatement(query); ResultSet res = p.executeQuery()) {
-            while (res.next()) {
-                Ticket ticket = new TicketBuilder().setId(res.getLong("id")).setName(res.getString("ticket_name")).setCoordinates(new Coordinates(res.getDouble("coordinates_x"), res.getFloat("coordinates_y"))).setCreationDate(res.getTimestamp("creation_date").toLocalDateTime()).setPrice(res.getLong("price")).setDescription(res.getString("description")).setType(TicketType.valueOf(res.getString("type_name"))).setEvent(new Event(res.getString("event_name"), res.getString("event_time"))).setUser(res.getString("username")).build();
-                collection.push(ticket);
+                "JOIN users ON tickets.user_id = users.id " +
+                condition +
+                "ORDER BY tickets.id;";
+        List<Future<T>> batches = new ArrayList<>();
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false); // Курсор драйвер открывает только внутри транзакции; при возврате соединения в пул она откатывается
+            try (PreparedStatement p = connection.prepareStatement(query)) {
+                parameters.set(p);
+                p.setFetchSize(LOAD_FETCH_SIZE);
+                try (ResultSet res = p.executeQuery()) {
+                    List<TicketRow> rows = new ArrayList<>(LOAD_FETCH_SIZE);
+                    while (res.next()) {
+                        rows.add(new TicketRow(res));
+                        if (rows.size() == LOAD_FETCH_SIZE) {
+                            batches.add(decode(rows, prepare));
+                            rows = new ArrayList<>(LOAD_FETCH_SIZE);
+                        }
+                    }
+                    batches.add(decode(rows, prepare));
+                }
             }
-        } catch (IllegalArgumentException e) {
-            return new ExecutionStatus(false, "Введены некорректные данные элемента коллекции!"+e);
+            for (Future<T> batch : batches) {
+                sink.accept(batch.get());
+            }
+        } catch (ExecutionException e) {
+            return new ExecutionStatus(false, "Введены некорректные данные элемента коллекции!" + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ExecutionStatus(false, "Загрузка коллекции прервана!");
         } catch (SQLException e) {
             return new ExecutionStatus(false, "Произошла ошибка при чтении коллекции из базы данных!"+e);
+        } finally {
+            batches.forEach(batch -> batch.cancel(true)); // После ошибки оставшиеся порции не нужны; завершённые это не затрагивает
         }
         return new ExecutionStatus(true, "Коллекция успешно загружена!");
     }
+
+    private interface ParameterSetter {
+        void set(PreparedStatement statement) throws SQLException;
+    }
+
+    private static <T> Future<T> decode(List<TicketRow> rows, Function<List<Ticket>, T> prepare) {
+        return DECODERS.submit(() -> {
+            List<Ticket> tickets = new ArrayList<>(rows.size());
+            for (TicketRow row : rows) {
+                tickets.add(row.toTicket());
+            }
+            return prepare.apply(tickets);
+        });
+    }
+
+    /**
+     * Значения столбцов одной строки результата. Извлекаются в потоке чтения, так как ResultSet нельзя читать из нескольких потоков,
+     * а элемент из них собирается уже в потоке обработки порции.
+     */
+    private static final class TicketRow {
+        private final long id;
+        private final String name;
+        private final double x;
+        private final float y;
+        private final Timestamp creationDate;
+        private final long price;
+        private final String description;
+        private final String typeName;
+        private final String eventName;
+        private final String eventTime;
+        private final String username;
+
+        private TicketRow(ResultSet res) throws SQLException {
+            id = res.getLong("id");
+            name = res.getString("ticket_name");
+            x = res.getDouble("coordinates_x");
+            y = res.getFloat("coordinates_y");
+            creationDate = res.getTimestamp("creation_date");
+            price = res.getLong("price");
+            description = res.getString("description");
+            typeName = res.getString("type_name");
+            eventName = res.getString("event_name");
+            eventTime = res.getString("event_time");
+            username = res.getString("username");
+        }
+
+        private Ticket toTicket() {
+            return new TicketBuilder().setId(id).setName(name).setCoordinates(new Coordinates(x, y)).setCreationDate(creationDate.toLocalDateTime()).setPrice(price).setDescription(description).setType(TicketType.valueOf(typeName)).setEvent(new Event(eventName, eventTime)).setUser(username).build();
+        }
+    }
 }
\ No newline at end of file
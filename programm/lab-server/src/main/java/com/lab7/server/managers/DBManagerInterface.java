@@ -5,10 +5,13 @@ import com.lab7.common.models.TicketType;
 import com.lab7.common.utility.ExecutionStatus;
 import com.lab7.common.utility.Pair;
 import com.lab7.common.utility.PermissionType;
+import com.lab7.server.utility.TicketCollection;
+import com.lab7.server.utility.TicketRange;
 import com.lab7.server.utility.Transactional;
 
 import java.sql.SQLException;
-import java.util.Stack;
+import java.util.Collection;
+import java.util.List;
 
 public interface DBManagerInterface {
     ExecutionStatus addUser(Pair<String, String> user);
@@ -21,13 +24,26 @@ public interface DBManagerInterface {
     ExecutionStatus removeById(Long id, Pair<String, String> user);
     ExecutionStatus removeAllByGenre(TicketType type, Pair<String, String> user);
     ExecutionStatus removeAllByGenre(TicketType type);
+    ExecutionStatus removeInRange(TicketRange range, Pair<String, String> user, Collection<Long> removedIds);
 
-    @Transactional
     ExecutionStatus addTicket(Ticket ticket, Pair<String, String> user) throws SQLException;
 
     @Transactional
+    ExecutionStatus addTickets(List<Ticket> tickets, Pair<String, String> user) throws SQLException;
+
     ExecutionStatus updateTicket(Ticket ticket, Pair<String, String> user) throws SQLException;
 
-    ExecutionStatus loadCollection(Stack<Ticket> collection);
+    List<Long> reserveTicketIds(int count) throws SQLException;
+
+    @Transactional
+    ExecutionStatus applyJournal(List<WriteBehindJournal.Mutation> mutations) throws SQLException;
+
+    ExecutionStatus loadCollection(List<TicketCollection.Fragment> fragments);
+
+    ExecutionStatus loadChangedTickets(long changeMark, List<Long> ids, Collection<Ticket> collection);
+
+    ExecutionStatus loadTicketIds(List<Long> ids);
+
+    long currentChangeMark() throws SQLException;
 
 }
\ No newline at end of file
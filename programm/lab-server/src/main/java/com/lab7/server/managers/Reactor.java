@@ -0,0 +1,107 @@
+package com.lab7.server.managers;
+
+import com.lab7.server.Server;
+import com.lab7.server.utility.ClientConnection;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Поток ввода-вывода со своим селектором.
+ * Обслуживает подключения, которые ему передаёт поток приёма: читает запросы и отправляет очереди ответов.
+ * Каждый канал регистрируется в селекторе один раз, дальше меняются только его interest ops.
+ */
+public class Reactor implements Runnable {
+    private final Selector selector;
+    private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+    private final ThreadManager threadManager;
+
+    /**
+     * Конструктор реактора.
+     *
+     * @param threadManager менеджер, которому передаются полученные запросы
+     * @throws IOException если не удалось открыть селектор
+     */
+    public Reactor(ThreadManager threadManager) throws IOException {
+        this.selector = Selector.open();
+        this.threadManager = threadManager;
+    }
+
+    /**
+     * Передаёт реактору новое подключение. Регистрация выполняется в потоке реактора.
+     *
+     * @param clientChannel принятый неблокирующий канал клиента
+     */
+    public void assign(SocketChannel clientChannel) {
+        newChannels.offer(clientChannel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                selector.select();
+                registerNewChannels();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Server.logger.fine("Processing key: " + key);
+                    processKey(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Server.logger.severe("Reactor " + Thread.currentThread().getName() + " stopped: " + e.getMessage());
+        } finally {
+            ServerNetworkManager.getInstance().releaseDeflater();
+        }
+    }
+
+    private void registerNewChannels() {
+        SocketChannel clientChannel;
+        while ((clientChannel = newChannels.poll()) != null) {
+            try {
+                threadManager.onConnected(clientChannel.register(selector, SelectionKey.OP_READ));
+            } catch (IOException e) {
+                Server.logger.severe("Error registering client channel: " + e.getMessage());
+                threadManager.onDisconnect();
+            }
+        }
+    }
+
+    private void processKey(SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        try {
+            if (key.isWritable() && connection.flush()) {
+                Server.logger.fine("Output queue drained for client: " + connection.getChannel().getRemoteAddress());
+            }
+            if (key.isValid() && key.isReadable()) {
+                // Запросы разбираются в порядке получения, чтобы сохранить зависимости между ними
+                for (byte[] requestBytes : ServerNetworkManager.getInstance().receive(key)) {
+                    if (!connection.isHelloReceived()) { // Первый кадр клиента - приветствие с его возможностями
+                        threadManager.onHello(ServerNetworkManager.getInstance().readHello(requestBytes), key);
+                        continue;
+                    }
+                    threadManager.dispatch(ServerNetworkManager.getInstance().readRequest(requestBytes), key);
+                }
+            }
+        } catch (ServerNetworkManager.NullRequestException e) {
+            Server.logger.severe("Error receiving request from client: " + e.getMessage());
+            threadManager.disconnect(connection);
+        } catch (IOException | CancelledKeyException e) {
+            Server.logger.severe("Client " + key.channel() + " disconnected");
+            threadManager.disconnect(connection);
+        } catch (RuntimeException e) { // Ошибка одного подключения не должна останавливать весь реактор
+            Server.logger.severe("Error processing client " + key.channel() + ": " + e);
+            threadManager.disconnect(connection);
+        }
+    }
+}
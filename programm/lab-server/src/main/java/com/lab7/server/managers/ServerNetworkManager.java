@@ -1,24 +1,50 @@
 package com.lab7.server.managers;
 
+import com.lab7.common.models.Ticket;
+import com.lab7.common.utility.ClientHello;
+import com.lab7.common.utility.ExecutionStatus;
+import com.lab7.common.utility.Frame;
+import com.lab7.common.utility.FrameDecoder;
+import com.lab7.common.utility.MessageCodec;
 import com.lab7.common.utility.Request;
 import com.lab7.common.utility.Response;
 import com.lab7.server.Server;
+import com.lab7.server.utility.ClientConnection;
+import com.lab7.server.utility.ServerConfig;
 
-import java.nio.channels.Selector;
-import java.util.Arrays;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.nio.ByteBuffer;
-import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.StreamCorruptedException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 public class ServerNetworkManager {
+    private static final int MAX_FRAME_SIZE = ServerConfig.getInt("net.maxFrameSize", 1 << 20);
+    private static final int RESPONSE_CHUNK_SIZE = ServerConfig.getInt("net.responseChunkSize", 1000); // Билетов в одном кадре ответа
+    private static final boolean COMPRESSION_ENABLED = ServerConfig.getBoolean("net.compression.enabled", true);
+    private static final int COMPRESSION_LEVEL = ServerConfig.getInt("net.compression.level", Deflater.BEST_SPEED);
+    private static final int COMPRESSION_THRESHOLD = ServerConfig.getInt("net.compression.threshold", 1024); // Кадры меньше этого размера не сжимаются
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<>(); // Компрессор потока реактора для частей длинных ответов
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final AtomicLong compressedFrames = new AtomicLong();
+    private final AtomicLong bytesBeforeCompression = new AtomicLong();
+    private final AtomicLong bytesAfterCompression = new AtomicLong();
+    private final AtomicLong uncompressibleFrames = new AtomicLong(); // Кадры, отправленные без сжатия, потому что оно их не уменьшило
+    private final AtomicLong uncompressibleBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private static final int BACKLOG = ServerConfig.getInt("net.backlog", 1024); // Очередь ещё не принятых подключений
     private ServerSocketChannel serverChannel;
     private static volatile ServerNetworkManager instance;
 
@@ -39,8 +65,7 @@ public class ServerNetworkManager {
     public void startServer() throws IOException {
         serverChannel = ServerSocketChannel.open();
         int PORT = 13876;
-        serverChannel.bind(new InetSocketAddress(PORT));
-        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(PORT), BACKLOG);
         Server.logger.info("Server started on Port:" + PORT);
     }
 
@@ -55,33 +80,139 @@ public class ServerNetworkManager {
         return serverChannel;
     }
 
-    public synchronized void send(Response response, SocketChannel clientChannel) throws IOException {
-        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-             ObjectOutputStream clientDataOut = new ObjectOutputStream(bytes)) {
-            clientDataOut.writeObject(response);
-            byte[] byteResponse = bytes.toByteArray();
+    /**
+     * Кодирует ответ и ставит его в очередь отправки подключения.
+     * Сама запись в сокет выполняется потоком селектора, поэтому метод не блокирует вызывающий поток.
+     * Коллекция длиннее RESPONSE_CHUNK_SIZE отправляется несколькими кадрами, которые кодируются и сжимаются
+     * потоком реактора по мере отправки; остальные ответы сжимаются здесь же, в потоке команды.
+     *
+     * @param response ответ клиенту
+     * @param connection подключение клиента
+     */
+    public void send(Response response, ClientConnection connection) {
+        ExecutionStatus status = response.getExecutionStatus();
+        if (status != null && status.getCollection() != null && status.getCollection().size() > RESPONSE_CHUNK_SIZE) {
+            connection.enqueue(new ChunkIterator(response.getRequestId(), status.getCollection(), connection));
+            return;
+        }
+        long encodeStart = System.nanoTime();
+        ByteBuffer frame = MessageCodec.encodeResponse(response);
+        Server.logger.fine("Response encoded: " + frame.remaining() + " bytes in " + (System.nanoTime() - encodeStart) / 1000 + " us");
+        if (!isWorthCompressing(frame, connection)) {
+            connection.enqueue(frame);
+            return;
+        }
+        Deflater deflater = new Deflater(COMPRESSION_LEVEL); // Нативная память компрессора освобождается сразу, а не сборщиком мусора
+        try {
+            connection.enqueue(compress(frame, deflater));
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean isWorthCompressing(ByteBuffer frame, ClientConnection connection) {
+        return COMPRESSION_ENABLED && connection.isCompressionEnabled() && frame.remaining() >= COMPRESSION_THRESHOLD;
+    }
+
+    /**
+     * Сжимает часть длинного ответа компрессором потока реактора, если это имеет смысл.
+     */
+    private ByteBuffer compressIfWorthIt(ByteBuffer frame, ClientConnection connection) {
+        if (!isWorthCompressing(frame, connection)) {
+            return frame;
+        }
+        Deflater deflater = deflaters.get();
+        if (deflater == null) {
+            deflater = new Deflater(COMPRESSION_LEVEL);
+            deflaters.set(deflater);
+        }
+        return compress(frame, deflater);
+    }
 
-            ByteBuffer dataLength = ByteBuffer.allocate(8).putInt(byteResponse.length);
-            dataLength.flip();
-            clientChannel.write(dataLength);
-            Server.logger.info("Packet with message length sent: " + byteResponse.length);
+    /**
+     * Сжимает кадр и учитывает затраченное процессорное время потока.
+     * Если сжатие не уменьшило кадр, отправляется исходный.
+     */
+    private ByteBuffer compress(ByteBuffer frame, Deflater deflater) {
+        long start = threads.getCurrentThreadCpuTime();
+        ByteBuffer compressed = Frame.compress(frame, deflater);
+        long nanos = threads.getCurrentThreadCpuTime() - start;
+        compressionNanos.addAndGet(nanos);
+        Server.logger.fine("Frame compressed: " + frame.remaining() + " -> " + compressed.remaining() + " bytes in " + nanos / 1000 + " us CPU");
+        if (compressed.remaining() >= frame.remaining()) { // Степень сжатия считается только по действительно отправленным сжатым кадрам
+            uncompressibleFrames.incrementAndGet();
+            uncompressibleBytes.addAndGet(frame.remaining());
+            return frame;
+        }
+        compressedFrames.incrementAndGet();
+        bytesBeforeCompression.addAndGet(frame.remaining());
+        bytesAfterCompression.addAndGet(compressed.remaining());
+        return compressed;
+    }
+
+    /**
+     * Освобождает компрессор текущего потока. Вызывается реактором при остановке.
+     */
+    void releaseDeflater() {
+        Deflater deflater = deflaters.get();
+        if (deflater != null) {
+            deflater.end();
+            deflaters.remove();
+        }
+    }
+
+    /**
+     * Записывает в лог суммарную статистику сжатия: степень сжатия отправленных сжатых кадров, число кадров,
+     * которые сжатие не уменьшило, и процессорное время всех попыток сжатия.
+     */
+    public void logCompressionStatistics() {
+        long frames = compressedFrames.get();
+        long uncompressible = uncompressibleFrames.get();
+        if (frames + uncompressible == 0) {
+            return;
+        }
+        long before = bytesBeforeCompression.get();
+        long after = bytesAfterCompression.get();
+        long nanos = compressionNanos.get();
+        Server.logger.info(String.format("Compression (level %d, threshold %d bytes): %d frames, %d -> %d bytes, ratio %.2f, %d frames sent uncompressed, %d ms CPU, %.1f MB/s",
+                COMPRESSION_LEVEL, COMPRESSION_THRESHOLD, frames, before, after, (double) before / Math.max(1, after), uncompressible,
+                nanos / 1_000_000, (before + uncompressibleBytes.get()) * 1000.0 / Math.max(1, nanos)));
+    }
 
-            while (byteResponse.length > 256) {
-                ByteBuffer packet = ByteBuffer.wrap(Arrays.copyOfRange(byteResponse, 0, 256));
-                clientChannel.write(packet);
-                byteResponse = Arrays.copyOfRange(byteResponse, 256, byteResponse.length);
-                Server.logger.info("Packet of bytes sent with length: " + packet.position());
+    /**
+     * Разбивает коллекцию ответа на части и кодирует очередную часть только по запросу.
+     * Элементы берутся из итератора коллекции ответа, поэтому неизменяемая версия коллекции не копируется.
+     * Части кодируются и сжимаются в потоке реактора; за одно событие записи их выдаётся не больше net.framesPerWrite.
+     */
+    private class ChunkIterator implements Iterator<ByteBuffer> {
+        private final long requestId;
+        private final Iterator<Ticket> tickets;
+        private final ClientConnection connection;
+
+        private ChunkIterator(long requestId, Collection<Ticket> tickets, ClientConnection connection) {
+            this.requestId = requestId;
+            this.tickets = tickets.iterator();
+            this.connection = connection;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tickets.hasNext();
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
-            ByteBuffer packet = ByteBuffer.wrap(byteResponse);
-            clientChannel.write(packet);
-            Thread.sleep(300);
-            Server.logger.info("Last packet of bytes sent with length: " + packet.position());
-            ByteBuffer stopPacket = ByteBuffer.wrap(new byte[]{69, 69});
-            clientChannel.write(stopPacket);
-            Server.logger.info("Stop packet sent");
-        } catch (InterruptedException e) {
-            Server.logger.severe("Error while sending data: " + e.getMessage());
-            throw new RuntimeException(e);
+            Stack<Ticket> chunk = new Stack<>();
+            while (chunk.size() < RESPONSE_CHUNK_SIZE && tickets.hasNext()) {
+                chunk.add(tickets.next());
+            }
+            Response response = new Response(new ExecutionStatus(true, chunk));
+            response.setRequestId(requestId);
+            response.setPartial(hasNext());
+            return compressIfWorthIt(MessageCodec.encodeResponse(response), connection);
         }
     }
 
@@ -91,27 +222,65 @@ public class ServerNetworkManager {
         }
     }
 
-    public synchronized Request receive(SocketChannel clientChannel, SelectionKey key) throws IOException, ClassNotFoundException, NullPointerException, NullRequestException {
-        ByteBuffer clientData = ByteBuffer.allocate(2048);
-        int bytesRead = clientChannel.read(clientData);
-        Server.logger.info(bytesRead + " bytes received from client");
+    /**
+     * Создаёт состояние подключения для нового клиента и прикрепляет его к ключу.
+     *
+     * @param key ключ канала клиента в селекторе
+     * @return подключение с декодером, ограниченным размером кадра из настроек сервера
+     */
+    public ClientConnection createConnection(SelectionKey key) {
+        ClientConnection connection = new ClientConnection(key, new FrameDecoder(MAX_FRAME_SIZE));
+        key.attach(connection);
+        return connection;
+    }
+
+    /**
+     * Дочитывает доступные байты в декодер подключения, прикреплённого к ключу.
+     *
+     * @return полезные нагрузки всех полностью полученных запросов (возможно, пустой список)
+     */
+    public List<byte[]> receive(SelectionKey key) throws IOException, NullRequestException {
+        FrameDecoder decoder = ((ClientConnection) key.attachment()).getDecoder();
+        int bytesRead = decoder.read((SocketChannel) key.channel());
+        Server.logger.fine(bytesRead + " bytes received from client");
         if (bytesRead == -1) {
             key.cancel();
             Server.logger.warning("Client closed the connection");
             throw new NullRequestException("Client closed the connection");
         }
-        if (bytesRead == 0) {
-            throw new NullRequestException("No data received from client");
+        try {
+            List<byte[]> frames = new ArrayList<>();
+            byte[] frame;
+            while ((frame = decoder.nextFrame()) != null) {
+                frames.add(frame); // Клиент может прислать несколько запросов подряд, не дожидаясь ответов
+            }
+            return frames;
+        } catch (ProtocolException e) {
+            key.cancel();
+            Server.logger.severe("Request was not received from client: " + e.getMessage());
+            throw new NullRequestException("Request was not received from client");
+        }
+    }
+
+    public ClientHello readHello(byte[] payload) throws NullRequestException {
+        try {
+            ClientHello hello = MessageCodec.decodeHello(ByteBuffer.wrap(payload));
+            Server.logger.fine("Hello received from client: " + hello);
+            return hello;
+        } catch (ProtocolException e) {
+            Server.logger.severe("Hello was not received from client: " + e.getMessage());
+            throw new NullRequestException("Hello was not received from client");
         }
-        clientData.flip(); // Переключаем ByteBuffer в режим чтения
+    }
 
-        try (ObjectInputStream clientDataIn = new ObjectInputStream(new ByteArrayInputStream(clientData.array(), 0, bytesRead))) {
-            Server.logger.info("Request received from client");
-            return (Request) clientDataIn.readObject();
-        } catch (StreamCorruptedException e) {
-            key.cancel();
+    public Request readRequest(byte[] payload) throws NullRequestException {
+        try {
+            Request request = MessageCodec.decodeRequest(ByteBuffer.wrap(payload));
+            Server.logger.fine("Request received from client");
+            return request;
+        } catch (ProtocolException e) {
             Server.logger.severe("Request was not received from client: " + e.getMessage());
             throw new NullRequestException("Request was not received from client");
         }
     }
-}
\ No newline at end of file
+}
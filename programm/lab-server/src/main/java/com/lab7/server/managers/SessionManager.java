@@ -0,0 +1,96 @@
+package com.lab7.server.managers;
+
+import com.lab7.server.utility.ServerConfig;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Таблица сессий пользователей.
+ * После входа клиент получает непрозрачный токен и дальше передаёт его вместо логина и пароля,
+ * поэтому для проверки запроса достаточно найти токен в памяти, без хэширования пароля и запросов к базе данных.
+ * Сессия, которой не пользовались дольше session.idleTimeoutSeconds секунд, удаляется.
+ */
+public class SessionManager {
+    private static final long IDLE_TIMEOUT_MILLIS = ServerConfig.getInt("session.idleTimeoutSeconds", 1800) * 1000L;
+    private static final int TOKEN_BYTES = 24;
+    private static volatile SessionManager instance;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    private SessionManager() {
+    }
+
+    public static SessionManager getInstance() {
+        if (instance == null) {
+            synchronized (SessionManager.class) {
+                if (instance == null) {
+                    instance = new SessionManager();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Открывает новую сессию пользователя.
+     *
+     * @param username имя пользователя, прошедшего проверку пароля
+     * @return токен сессии
+     */
+    public String open(String username) {
+        long now = System.currentTimeMillis();
+        removeExpired(now);
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(username, now));
+        return token;
+    }
+
+    /**
+     * Находит пользователя по токену и продлевает его сессию.
+     *
+     * @param token токен сессии
+     * @return имя пользователя или null, если сессии нет или она истекла
+     */
+    public String resolve(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.lastAccess > IDLE_TIMEOUT_MILLIS) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.lastAccess = now;
+        return session.username;
+    }
+
+    /**
+     * Удаляет истёкшие сессии, которые клиенты так и не использовали повторно.
+     * Выполняется не чаще одного раза за время простоя сессии.
+     */
+    private void removeExpired(long now) {
+        long last = lastSweep.get();
+        if (now - last < IDLE_TIMEOUT_MILLIS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        sessions.values().removeIf(session -> now - session.lastAccess > IDLE_TIMEOUT_MILLIS);
+    }
+
+    private static final class Session {
+        private final String username;
+        private volatile long lastAccess;
+
+        private Session(String username, long lastAccess) {
+            this.username = username;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
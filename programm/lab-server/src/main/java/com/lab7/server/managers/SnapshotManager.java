@@ -0,0 +1,261 @@
+package com.lab7.server.managers;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.common.utility.ExecutionStatus;
+import com.lab7.common.utility.MessageCodec;
+import com.lab7.common.utility.Response;
+import com.lab7.server.Server;
+import com.lab7.server.utility.ServerConfig;
+import com.lab7.server.utility.TicketCollection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Stack;
+import java.util.zip.CRC32;
+
+/**
+ * Снимки коллекции на локальном диске для быстрого перезапуска сервера.
+ * Снимок хранит элементы коллекции и отметку - наибольший номер изменения строки в таблице tickets на момент снимка.
+ * При запуске снимок отображается в память, а из базы данных догружаются только строки, изменённые после отметки.
+ * Элементы записываются кадрами того же формата, что и ответы клиенту, по snapshot.chunkSize элементов в кадре,
+ * поэтому кадры декодируются параллельно. Целостность файла проверяется по контрольной сумме CRC32 в конце файла.
+ */
+public class SnapshotManager {
+    private static final boolean ENABLED = ServerConfig.getBoolean("snapshot.enabled", true);
+    private static final Path SNAPSHOT_FILE = Path.of(ServerConfig.getString("snapshot.file", "collection.snapshot"));
+    private static final long INTERVAL_MILLIS = ServerConfig.getInt("snapshot.intervalSeconds", 300) * 1000L;
+    private static final int CHUNK_SIZE = Math.max(1, ServerConfig.getInt("snapshot.chunkSize", 10000));
+    private static final int MAGIC = 0x544B5331; // "TKS1"
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES;
+    private static volatile SnapshotManager instance;
+    private Runnable saveTask;
+
+    /**
+     * Содержимое прочитанного снимка.
+     */
+    public static final class Snapshot {
+        private final long changeMark;
+        private final List<Ticket> tickets;
+
+        private Snapshot(long changeMark, List<Ticket> tickets) {
+            this.changeMark = changeMark;
+            this.tickets = tickets;
+        }
+
+        public long getChangeMark() {
+            return changeMark;
+        }
+
+        /**
+         * Возвращает элементы снимка в порядке возрастания id.
+         *
+         * @return элементы снимка
+         */
+        public List<Ticket> getTickets() {
+            return tickets;
+        }
+    }
+
+    private SnapshotManager() {
+    }
+
+    /**
+     * Проверяет, включены ли снимки коллекции (параметр snapshot.enabled).
+     *
+     * @return true, если коллекция сохраняется в снимки и восстанавливается из них
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Возвращает единственный экземпляр SnapshotManager.
+     *
+     * @return Экземпляр SnapshotManager.
+     */
+    public static SnapshotManager getInstance() {
+        if (instance == null) {
+            synchronized (SnapshotManager.class) {
+                if (instance == null) {
+                    instance = new SnapshotManager();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Запускает фоновый поток, который раз в snapshot.intervalSeconds выполняет сохранение снимка. Повторный вызов ничего не делает.
+     *
+     * @param task сохранение снимка
+     */
+    synchronized void start(Runnable task) {
+        if (saveTask != null) {
+            return;
+        }
+        saveTask = task;
+        Thread writer = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            }
+        }, "snapshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Сохраняет снимок сейчас, например при остановке сервера.
+     *
+     * @return статус выполнения
+     */
+    public ExecutionStatus saveNow() {
+        Runnable task;
+        synchronized (this) {
+            task = saveTask;
+        }
+        if (task == null) {
+            return new ExecutionStatus(false, "Коллекция ещё не загружена, снимок не сохранён.");
+        }
+        task.run();
+        return new ExecutionStatus(true, "Снимок коллекции сохранён.");
+    }
+
+    /**
+     * Записывает снимок версии коллекции в файл snapshot.file.
+     *
+     * @param collection версия коллекции
+     * @param changeMark наибольший номер изменения строки в базе данных, уже отражённого в этой версии
+     * @throws IOException если не удалось записать файл
+     */
+    synchronized void write(TicketCollection collection, long changeMark) throws IOException {
+        write(SNAPSHOT_FILE, collection, changeMark);
+    }
+
+    /**
+     * Записывает снимок версии коллекции. Файл сначала пишется рядом под временным именем и сбрасывается на диск,
+     * а затем атомарно заменяет прежний снимок, поэтому после сбоя на диске остаётся целый снимок - старый или новый.
+     *
+     * @param file файл снимка
+     * @param collection версия коллекции
+     * @param changeMark наибольший номер изменения строки в базе данных, уже отражённого в этой версии
+     * @throws IOException если не удалось записать файл
+     */
+    static void write(Path file, TicketCollection collection, long changeMark) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int chunks = (collection.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(changeMark).putInt(collection.size()).putInt(chunks).flip();
+            writeChecked(channel, header, checksum);
+            Stack<Ticket> chunk = new Stack<>();
+            for (Ticket ticket : collection) {
+                chunk.add(ticket);
+                if (chunk.size() == CHUNK_SIZE) {
+                    writeChecked(channel, encode(chunk), checksum);
+                    chunk = new Stack<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChecked(channel, encode(chunk), checksum);
+            }
+            writeChecked(channel, ByteBuffer.allocate(TRAILER_SIZE).putLong(checksum.getValue()).flip(), null);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Server.logger.info("Saved a collection snapshot of " + collection.size() + " tickets, change mark " + changeMark);
+    }
+
+    /**
+     * Читает снимок из файла snapshot.file.
+     *
+     * @return снимок или null, если файла нет или он повреждён
+     */
+    Snapshot read() {
+        return read(SNAPSHOT_FILE);
+    }
+
+    /**
+     * Читает снимок, отображая файл в память. Кадры с элементами декодируются параллельно.
+     *
+     * @param file файл снимка
+     * @return снимок или null, если файла нет или он повреждён
+     */
+    static Snapshot read(Path file) {
+        if (!Files.exists(file)) {
+            Server.logger.info("No collection snapshot found at " + file.toAbsolutePath());
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new ProtocolException("Недопустимый размер снимка: " + size);
+            }
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodySize = (int) size - TRAILER_SIZE;
+            CRC32 checksum = new CRC32();
+            checksum.update(content.slice(0, bodySize));
+            if (checksum.getValue() != content.getLong(bodySize) || content.getInt(0) != MAGIC) {
+                throw new ProtocolException("Контрольная сумма снимка не совпадает");
+            }
+            ByteBuffer body = content.slice(0, bodySize);
+            body.position(Integer.BYTES);
+            long changeMark = body.getLong();
+            int count = body.getInt();
+            int chunks = body.getInt();
+            List<ByteBuffer> frames = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                int length = body.getInt();
+                frames.add(body.slice(body.position(), length));
+                body.position(body.position() + length);
+            }
+            List<Ticket> tickets = new ArrayList<>(count);
+            frames.parallelStream().map(SnapshotManager::decode).toList().forEach(tickets::addAll);
+            if (tickets.size() != count) {
+                throw new ProtocolException("В снимке " + tickets.size() + " элементов вместо " + count);
+            }
+            return new Snapshot(changeMark, tickets);
+        } catch (IOException | RuntimeException e) { // В том числе UncheckedIOException из декодирования кадров
+            Server.logger.warning("Ignoring the collection snapshot " + file.toAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ByteBuffer encode(Stack<Ticket> chunk) {
+        return MessageCodec.encodeResponse(new Response(new ExecutionStatus(true, chunk)));
+    }
+
+    private static Collection<Ticket> decode(ByteBuffer frame) {
+        try {
+            return MessageCodec.decodeResponse(frame).getExecutionStatus().getCollection();
+        } catch (ProtocolException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeChecked(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        if (checksum != null) {
+            checksum.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,42 +1,51 @@
 package com.lab7.server.managers;
 
+import com.lab7.common.utility.ClientHello;
 import com.lab7.common.utility.ExecutionStatus;
-import com.lab7.common.utility.Pair;
+import com.lab7.common.utility.MessageCodec;
 import com.lab7.common.utility.Request;
 import com.lab7.common.utility.Response;
-import com.lab7.common.validators.ArgumentValidator;
 import com.lab7.server.Server;
-import com.lab7.server.utility.AskingCommand;
+import com.lab7.server.utility.ClientConnection;
+import com.lab7.server.utility.CommandNames;
 import com.lab7.server.utility.PasswordHasher;
+import com.lab7.server.utility.ServerConfig;
 
 import java.io.IOException;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
-import java.nio.channels.Selector;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class ThreadManager {
+    private static final int MAX_CONCURRENT_COMMANDS = ServerConfig.getInt("executor.maxConcurrentCommands", 64);
+    private static final int ACCEPT_RETRY_DELAY_MS = ServerConfig.getInt("net.acceptRetryDelayMs", 100);
+    private static final int REACTORS = ServerConfig.getInt("net.reactors", Runtime.getRuntime().availableProcessors());
+    private static final ByteBuffer COMMANDS_UNCHANGED_FRAME = MessageCodec.encodeCommandsUnchanged().asReadOnlyBuffer();
     private static volatile ThreadManager instance;
-    private final Map<SocketChannel, CompletableFuture<Response>> responseFutures = new ConcurrentHashMap<>();
-    private final ForkJoinPool readPool;
-    private final ForkJoinPool writePool;
+    private final ExecutorService commandPool;
+    private final AtomicInteger openConnections = new AtomicInteger();
     private Executor executor;
+    private CommandManager commandManager;
 
     private ThreadManager() {
-        readPool = new ForkJoinPool();
-        writePool = new ForkJoinPool();
+        commandPool = createCommandPool();
+    }
+
+    /**
+     * Создаёт пул потоков размером с лимит одновременно выполняемых команд.
+     */
+    private static ExecutorService createCommandPool() {
+        Server.logger.info("Commands run in a pool of " + MAX_CONCURRENT_COMMANDS + " threads");
+        return Executors.newFixedThreadPool(MAX_CONCURRENT_COMMANDS);
     }
 
     public static synchronized ThreadManager getInstance() {
@@ -51,141 +60,210 @@ public class ThreadManager {
     }
 
     public void runServer(CommandManager commandManager) throws IOException, ClosedSelectorException, NullPointerException {
+        this.commandManager = commandManager;
         executor = new Executor(commandManager);
-        Selector selector = Selector.open();
+        Reactor[] reactors = new Reactor[Math.max(1, REACTORS)];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(this);
+            Thread reactorThread = new Thread(reactors[i], "reactor-" + i);
+            reactorThread.setDaemon(true);
+            reactorThread.start();
+        }
         ServerNetworkManager.getInstance().startServer();
-        ServerNetworkManager.getInstance().getServerSocketChannel().register(selector, SelectionKey.OP_ACCEPT);
-        Server.logger.info("Selector started");
+        ServerSocketChannel serverSocketChannel = ServerNetworkManager.getInstance().getServerSocketChannel();
+        Server.logger.info("Started " + reactors.length + " I/O reactors");
         Server.logger.info("To stop the server, press [Ctrl + C]");
+        int nextReactor = 0;
         while (true) {
-            selector.select();
-            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-            while (keys.hasNext()) {
-                SelectionKey key = keys.next();
-                Server.logger.info("Processing key: " + key);
-                try {
-                    if (key.isValid()) {
-                        if (key.isAcceptable()) {
-                            // Принимаем новое соединение
-                            ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key.channel();
-                            SocketChannel clientChannel = serverSocketChannel.accept();
-                            Server.logger.info("Client connected: " + clientChannel.getRemoteAddress());
-                            clientChannel.configureBlocking(false);
-                            ThreadManager.getInstance().initialCommandsData(clientChannel, key, commandManager);
-                            clientChannel.register(selector, SelectionKey.OP_READ);
-                        } else if (key.isReadable()) {
-                            SocketChannel clientChannel = (SocketChannel) key.channel();
-                            clientChannel.configureBlocking(false);
-                            if (responseFutures.get(clientChannel) != null) {
-                                continue; // Пропускаем итерацию, если уже идёт обработка этого клиента
-                            }
-                            CompletableFuture<Response> responseFuture = ThreadManager.getInstance().readMessage(clientChannel, key);
-                            responseFutures.put(clientChannel, responseFuture);
-                            clientChannel.register(selector, SelectionKey.OP_WRITE);
-                        } else if (key.isWritable()) {
-                            SocketChannel clientChannel = (SocketChannel) key.channel();
-                            clientChannel.configureBlocking(false);
-                            ThreadManager.getInstance().writeMessage(clientChannel, key);
-                            clientChannel.register(selector, SelectionKey.OP_READ);
-                        }
-                    }
-                } catch (SocketException | CancelledKeyException e) {
-                    try (var channel = key.channel()) {
-                        Server.logger.severe("Client " + channel.toString() + " disconnected");
-                        key.cancel();
-                    }
-                } finally {
-                    keys.remove();
-                }
+            // Поток приёма только принимает соединения и раздаёт их реакторам по кругу
+            SocketChannel clientChannel = null;
+            try {
+                clientChannel = serverSocketChannel.accept();
+                Server.logger.info("Client connected: " + clientChannel.getRemoteAddress());
+                clientChannel.configureBlocking(false);
+            } catch (ClosedChannelException e) {
+                throw e;
+            } catch (IOException e) { // Например, исчерпан лимит открытых файлов: остальные клиенты продолжают работать
+                Server.logger.severe("Error accepting client connection: " + e.getMessage());
+                closeQuietly(clientChannel);
+                pauseAccepting();
+                continue;
             }
+            openConnections.incrementAndGet();
+            reactors[nextReactor].assign(clientChannel);
+            nextReactor = (nextReactor + 1) % reactors.length;
         }
     }
 
-    private void initialCommandsData(SocketChannel clientChannel, SelectionKey key, CommandManager commandManager) {
-        Thread processRequestThread = new Thread(() -> {
-            try {
-                Map<String, Pair<ArgumentValidator, Boolean>> commandsData = new HashMap<>();
-                commandManager.getCommandsMap().forEach((key1, value) -> {
-                    boolean isAskingCommand = AskingCommand.class.isAssignableFrom(value.getClass());
-                    commandsData.put(key1, new Pair<>(value.getArgumentValidator(), isAskingCommand));
-                });
-                ServerNetworkManager.getInstance().send(new Response(commandsData), clientChannel);
-                Server.logger.info("Command list sent to the client: " + clientChannel.getRemoteAddress());
-            } catch (IOException e) {
-                Server.logger.severe("Error sending command list to the client: " + e.getMessage());
-                key.cancel();
-            } catch (NullPointerException e) {
-                Server.logger.severe("The client disconnected from the server: " + e.getMessage());
-                key.cancel();
-            }
-        });
-        processRequestThread.start();
+    /**
+     * Ненадолго откладывает следующий accept, чтобы при нехватке дескрипторов не крутить цикл приёма вхолостую.
+     */
+    private static void pauseAccepting() {
         try {
-            processRequestThread.join();
+            Thread.sleep(ACCEPT_RETRY_DELAY_MS);
         } catch (InterruptedException e) {
-            Server.logger.severe("Error while waiting for request processing: " + e.getMessage());
+            Thread.currentThread().interrupt();
         }
     }
 
-    private CompletableFuture<Response> readMessage(SocketChannel clientChannel, SelectionKey key) {
-        CompletableFuture<Response> responseFuture = new CompletableFuture<>();
-        readPool.submit(() -> {
-            try {
-                Request request = ServerNetworkManager.getInstance().receive(clientChannel, key);
-                if (request.getUser() != null) { // Шифруем пароль пользователя, но только если он уже авторизован
-                    request.getUser().setSecond(PasswordHasher.getHash(request.getUser().getSecond()));
-                }
-                Server.logger.info("Request received from client: " + request);
-                Thread processRequestThread = getProcessRequestThread(request, responseFuture);
-                processRequestThread.start();
-            } catch (ServerNetworkManager.NullRequestException | SocketException e) {
-                Server.logger.severe("Error receiving request from client: " + e.getMessage());
-                key.cancel();
-            } catch (NullPointerException e) {
-                Server.logger.severe("Error receiving request from client: " + e.getMessage());
-            } catch (ClosedChannelException e) {
-                Server.logger.severe("Error processing request: " + e.getMessage());
-                responseFuture.completeExceptionally(e);
-                key.cancel();
-            } catch (IOException | ClassNotFoundException e) {
-                Server.logger.severe("Fatal error: " + e.getMessage());
-                throw new RuntimeException(e);
+    private static void closeQuietly(SocketChannel clientChannel) {
+        if (clientChannel == null) {
+            return;
+        }
+        try {
+            clientChannel.close();
+        } catch (IOException e) {
+            Server.logger.warning("Error closing client channel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Создаёт состояние нового подключения. Вызывается потоком реактора.
+     *
+     * @param key ключ только что зарегистрированного канала клиента
+     */
+    void onConnected(SelectionKey key) {
+        ServerNetworkManager.getInstance().createConnection(key);
+    }
+
+    /**
+     * Применяет возможности клиента из приветствия и отправляет ему список команд. Вызывается потоком реактора.
+     *
+     * @param hello приветствие клиента
+     * @param key ключ канала клиента
+     */
+    void onHello(ClientHello hello, SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        connection.helloReceived(hello.isCompressionSupported());
+        initialCommandsData(connection, hello);
+    }
+
+    /**
+     * Передаёт запрос на выполнение и ставит ответ в очередь подключения. Вызывается потоком реактора.
+     *
+     * @param request полученный запрос
+     * @param key ключ канала клиента
+     */
+    void dispatch(Request request, SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        CompletableFuture<Response> responseFuture = readMessage(request, connection);
+        writeMessage(request, responseFuture, connection);
+    }
+
+    private void initialCommandsData(ClientConnection connection, ClientHello hello) {
+        try {
+            if (commandManager.getHandshakeHash().equals(hello.getCommandsHash())) {
+                connection.enqueue(COMMANDS_UNCHANGED_FRAME.duplicate());
+                Server.logger.info("Client already has the command list: " + connection.getChannel().getRemoteAddress());
+            } else {
+                connection.enqueue(commandManager.getHandshakeFrame());
+                Server.logger.info("Command list queued for the client: " + connection.getChannel().getRemoteAddress());
             }
-        });
+        } catch (IOException | CancelledKeyException e) {
+            Server.logger.severe("Error sending command list to the client: " + e.getMessage());
+            disconnect(connection);
+        }
+    }
+
+    private CompletableFuture<Response> readMessage(Request request, ClientConnection connection) {
+        CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+        connection.order(isReadOnly(request), responseFuture)
+                .thenRun(() -> commandPool.execute(() -> processRequest(request, responseFuture)));
         return responseFuture;
     }
 
-    private Thread getProcessRequestThread(Request request, CompletableFuture<Response> responseFuture) {
-        return new Thread(() -> {
+    private static boolean isReadOnly(Request request) {
+        try {
+            return CommandNames.valueOf(request.getCommand()[0].toUpperCase()).isReadOnly();
+        } catch (IllegalArgumentException e) {
+            return false; // login, register и неизвестные команды выполняются строго по порядку
+        }
+    }
+
+    private void processRequest(Request request, CompletableFuture<Response> responseFuture) {
+        try {
+            if (request.getUser() != null) { // Пароль передаётся только при входе, регистрации и от клиентов без сессии
+                request.getUser().setSecond(PasswordHasher.getHash(request.getUser().getSecond()));
+            }
+            Server.logger.fine("Request received from client: " + request);
             AuthenticatedExecutor authenticatedExecutor = new AuthenticatedExecutor(executor);
-            ExecutionStatus executionStatus = authenticatedExecutor.runCommand(request.getCommand(), request.getTicket(), request.getUser());
-            if (!executionStatus.isSuccess()) {
-                Server.logger.severe(executionStatus.getMessage());
+            Response response = authenticatedExecutor.execute(request);
+            if (!response.getExecutionStatus().isSuccess()) {
+                Server.logger.severe(response.getExecutionStatus().getMessage());
             }
-            responseFuture.complete(new Response(executionStatus));
-        });
+            response.setRequestId(request.getId());
+            responseFuture.complete(response);
+        } catch (RuntimeException e) {
+            Server.logger.severe("Error processing request from client: " + e.getMessage());
+            responseFuture.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Закрывает подключение клиента и учитывает его отключение. Повторные вызовы для того же подключения ничего не делают.
+     *
+     * @param connection подключение клиента
+     */
+    void disconnect(ClientConnection connection) {
+        try {
+            if (!connection.close()) {
+                return;
+            }
+        } catch (IOException e) {
+            Server.logger.warning("Error closing client channel: " + e.getMessage());
+        }
+        onDisconnect();
     }
 
-    private void writeMessage(SocketChannel clientChannel, SelectionKey key) {
-        writePool.submit(() -> {
+    /**
+     * Учитывает отключение клиента. Когда отключается последний клиент, записывает в лог статистику сжатия ответов.
+     */
+    void onDisconnect() {
+        if (openConnections.decrementAndGet() > 0) {
+            return;
+        }
+        Server.logger.info("All clients disconnected");
+        ServerNetworkManager.getInstance().logCompressionStatistics();
+    }
+
+    /**
+     * Ставит ответ в очередь подключения, как только команда завершится.
+     * Кодирование выполняет поток, завершивший команду; ни один поток не ждёт результата.
+     */
+    private void writeMessage(Request request, CompletableFuture<Response> responseFuture, ClientConnection connection) {
+        responseFuture.whenComplete((result, error) -> {
+            if (error != null) { // Клиент всё равно получает ответ, иначе его запрос повиснет
+                Server.logger.severe("Error doing the command: " + error.getMessage());
+                sendError(request, connection);
+                return;
+            }
             try {
-                CompletableFuture<Response> responseFuture = responseFutures.get(clientChannel);
-                if (responseFuture != null) {
-                    Response response = responseFuture.get();
-                    ServerNetworkManager.getInstance().send(response, clientChannel);
-                    Server.logger.info("Response sent to client: " + clientChannel.getRemoteAddress());
-                    responseFutures.remove(clientChannel);
-                }
-                else{
-                    Server.logger.severe("No response future found for client: " + clientChannel.getRemoteAddress());
-                }
-            }  catch (IOException e) {
-                Server.logger.severe("Error sending response to client: " + e.getMessage());
-                key.cancel();
-            } catch (ExecutionException | InterruptedException e) {
-                Server.logger.severe("Error doing the command: " + e.getMessage());
-                throw new RuntimeException(e);
+                send(result, connection);
+            } catch (RuntimeException e) { // Ответ не удалось закодировать: клиент получает ошибку вместо него
+                Server.logger.severe("Error encoding response to request " + request.getId() + ": " + e);
+                sendError(request, connection);
             }
         });
     }
-}
\ No newline at end of file
+
+    private void sendError(Request request, ClientConnection connection) {
+        Response response = new Response(new ExecutionStatus(false, "Ошибка при выполнении команды на сервере."));
+        response.setRequestId(request.getId());
+        try {
+            send(response, connection);
+        } catch (RuntimeException e) {
+            Server.logger.severe("Error encoding error response to request " + request.getId() + ": " + e);
+            disconnect(connection);
+        }
+    }
+
+    private void send(Response response, ClientConnection connection) {
+        try {
+            ServerNetworkManager.getInstance().send(response, connection);
+            Server.logger.fine("Response to request " + response.getRequestId() + " queued for client: " + connection.getChannel().getRemoteAddress());
+        } catch (IOException | CancelledKeyException e) {
+            Server.logger.severe("Error sending response to client: " + e.getMessage());
+            disconnect(connection);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.lab7.server.managers;
+
+import com.lab7.common.utility.PermissionType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш сведений о пользователях: id, хэш пароля и права.
+ * Заполняется при первом обращении к пользователю; запись удаляется сразу после изменения пользователя в базе данных,
+ * поэтому следующий запрос перечитает актуальные данные.
+ */
+class UserDirectory {
+    private final Map<String, Entry> users = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong(); // Счётчик удалений, чтобы не сохранить данные, прочитанные до изменения
+
+    /**
+     * Возвращает сохранённые сведения о пользователе.
+     *
+     * @param username имя пользователя
+     * @return сведения о пользователе или null, если их нет в кэше
+     */
+    Entry get(String username) {
+        return users.get(username);
+    }
+
+    /**
+     * Возвращает отметку, которую нужно получить до чтения пользователя из базы данных и передать в {@link #put}.
+     *
+     * @return текущее число удалений из кэша
+     */
+    long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Сохраняет сведения о пользователе, если с момента получения отметки кэш не сбрасывался.
+     * Иначе прочитанные данные могли устареть, и следующий запрос прочитает их заново.
+     *
+     * @param username имя пользователя
+     * @param entry сведения из базы данных
+     * @param stamp отметка, полученная до чтения из базы данных
+     */
+    void put(String username, Entry entry, long stamp) {
+        users.put(username, entry);
+        if (invalidations.get() != stamp) {
+            users.remove(username, entry);
+        }
+    }
+
+    /**
+     * Удаляет пользователя из кэша после изменения его данных.
+     *
+     * @param username имя пользователя
+     */
+    void invalidate(String username) {
+        invalidations.incrementAndGet();
+        users.remove(username);
+    }
+
+    /**
+     * Сведения о пользователе из таблицы users.
+     */
+    static final class Entry {
+        private final long id;
+        private final String passwordHash;
+        private final PermissionType permission;
+
+        Entry(long id, String passwordHash, PermissionType permission) {
+            this.id = id;
+            this.passwordHash = passwordHash;
+            this.permission = permission;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getPasswordHash() {
+            return passwordHash;
+        }
+
+        PermissionType getPermission() {
+            return permission;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.lab7.server.managers;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.common.utility.ExecutionStatus;
+import com.lab7.common.utility.Frame;
+import com.lab7.common.utility.MessageCodec;
+import com.lab7.common.utility.Request;
+import com.lab7.server.Server;
+import com.lab7.server.utility.ServerConfig;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал отложенной записи изменений коллекции.
+ * В этом режиме добавление, обновление и удаление элемента применяются к коллекции в памяти и дописываются в локальный файл;
+ * клиенту отвечают, как только запись в файле сброшена на диск. Один сброс на диск покрывает все записи, накопившиеся к этому моменту.
+ * Фоновый поток переносит сброшенные на диск изменения в базу данных пачками, по одной транзакции на пачку, после чего журнал очищается.
+ * Если сброс на диск не удался, несброшенные записи отбрасываются, а журнал больше не принимает изменений до перезапуска сервера:
+ * после такой ошибки нельзя полагаться на то, что повторный сброс сохранит файл.
+ * Если сервер остановился раньше, при следующем запуске записи журнала применяются к базе данных до загрузки коллекции.
+ * Записи журнала кодируются тем же форматом, что и запросы клиента: кадр с длиной, в запросе - вид изменения, id элемента и сам элемент.
+ * За кадром следует контрольная сумма CRC32 кадра, по которой при восстановлении распознаётся недописанный или испорченный хвост файла.
+ */
+public class WriteBehindJournal {
+    private static final boolean ENABLED = ServerConfig.getBoolean("persistence.writeBehind", false);
+    private static final Path JOURNAL_FILE = Path.of(ServerConfig.getString("persistence.journalFile", "collection.journal"));
+    private static final long FLUSH_INTERVAL_MILLIS = ServerConfig.getInt("persistence.flushIntervalMillis", 200);
+    private static final int BATCH_SIZE = ServerConfig.getInt("persistence.batchSize", 1000);
+    private static final int ID_BLOCK_SIZE = ServerConfig.getInt("persistence.idBlockSize", 100);
+    private static final long DRAIN_TIMEOUT_MILLIS = 30000;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+    private static volatile WriteBehindJournal instance;
+    private final DBManagerInterface dbManager = DBManager.getInstance();
+    private final FileChannel channel;
+    private final Deque<Mutation> pending = new ArrayDeque<>(); // Записи, ещё не перенесённые в базу данных
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    private final Object syncMonitor = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock(); // Пачки переносятся в базу данных строго по очереди
+    private long appendedSequence; // Номера записей в pending идут подряд и заканчиваются этим номером
+    private volatile long durableSequence;
+    private long durableOffset; // Конец последней сброшенной на диск записи в файле
+    private long truncations; // Сколько раз файл очищался; по нему сброс на диск узнаёт, что его смещение устарело
+    private volatile boolean failed;
+
+    /**
+     * Вид изменения коллекции.
+     */
+    public enum Kind {
+        ADD,
+        UPDATE,
+        REMOVE
+    }
+
+    /**
+     * Одно изменение коллекции: вид, id элемента и новое значение (для удаления - null).
+     */
+    public static final class Mutation {
+        private final Kind kind;
+        private final long ticketId;
+        private final Ticket ticket;
+
+        Mutation(Kind kind, long ticketId, Ticket ticket) {
+            this.kind = kind;
+            this.ticketId = ticketId;
+            this.ticket = ticket;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getTicketId() {
+            return ticketId;
+        }
+
+        public Ticket getTicket() {
+            return ticket;
+        }
+    }
+
+    /**
+     * Конструктор журнала. Применяет к базе данных записи, оставшиеся от предыдущего запуска, и запускает фоновый поток записи.
+     */
+    private WriteBehindJournal() {
+        try {
+            recover();
+            channel = FileChannel.open(JOURNAL_FILE, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException | SQLException e) {
+            Server.logger.severe("Failed to recover the write-behind journal: " + e.getMessage());
+            throw new IllegalStateException(e);
+        }
+        Thread writer = new Thread(this::runWriter, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Server.logger.info("Write-behind persistence enabled, journal " + JOURNAL_FILE.toAbsolutePath());
+    }
+
+    /**
+     * Проверяет, включён ли режим отложенной записи (параметр persistence.writeBehind).
+     *
+     * @return true, если изменения коллекции записываются через журнал
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Возвращает единственный экземпляр WriteBehindJournal.
+     *
+     * @return Экземпляр WriteBehindJournal.
+     */
+    public static WriteBehindJournal getInstance() {
+        if (instance == null) {
+            synchronized (WriteBehindJournal.class) {
+                if (instance == null) {
+                    instance = new WriteBehindJournal();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Выдаёт id для нового элемента. Id резервируются в базе данных блоками по persistence.idBlockSize штук.
+     *
+     * @return id нового элемента
+     * @throws SQLException если не удалось зарезервировать id
+     */
+    public synchronized long nextTicketId() throws SQLException {
+        if (reservedIds.isEmpty()) {
+            reservedIds.addAll(dbManager.reserveTicketIds(ID_BLOCK_SIZE));
+        }
+        return reservedIds.poll();
+    }
+
+    /**
+     * Дописывает изменение в журнал. Запись ещё не сброшена на диск: перед ответом клиенту нужно вызвать {@link #awaitDurable}.
+     *
+     * @param kind вид изменения
+     * @param ticketId id элемента
+     * @param ticket новое значение элемента или null для удаления
+     * @return номер записи
+     * @throws IOException если не удалось записать в файл журнала или журнал недоступен после ошибки сброса на диск
+     */
+    public synchronized long append(Kind kind, long ticketId, Ticket ticket) throws IOException {
+        if (failed) {
+            throw new IOException("журнал изменений недоступен после ошибки записи на диск");
+        }
+        Mutation mutation = new Mutation(kind, ticketId, ticket);
+        ByteBuffer record = encode(mutation, appendedSequence + 1);
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        pending.add(mutation);
+        if (pending.size() == 1 || pending.size() >= BATCH_SIZE) {
+            notifyAll(); // Будим поток записи: появилась первая запись или набралась целая пачка
+        }
+        return ++appendedSequence;
+    }
+
+    /**
+     * Ждёт, пока запись окажется на диске. Поток, пришедший первым, сбрасывает на диск все записи, дописанные к этому моменту;
+     * остальные ждут его и, как правило, обнаруживают, что их записи уже сохранены.
+     * Если сброс не удался, все несброшенные записи отбрасываются и в базу данных не попадут.
+     *
+     * @param sequence номер записи
+     * @throws IOException если запись не сохранена на диске
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (syncMonitor) {
+            if (durableSequence >= sequence) {
+                return;
+            }
+            if (failed) {
+                throw new IOException("запись журнала изменений отброшена после ошибки записи на диск");
+            }
+            long target;
+            long targetOffset;
+            long targetTruncations;
+            synchronized (this) {
+                target = appendedSequence;
+                targetOffset = channel.position();
+                targetTruncations = truncations;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                discardUnsynced();
+                throw e;
+            }
+            synchronized (this) {
+                if (truncations == targetTruncations) { // Иначе файл очищен и сброшен на диск потоком записи
+                    durableOffset = targetOffset;
+                }
+            }
+            durableSequence = target;
+        }
+    }
+
+    /**
+     * Возвращает номер последней записи, сброшенной на диск.
+     *
+     * @return номер записи
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Проверяет, перестал ли журнал принимать изменения после ошибки сброса на диск.
+     *
+     * @return true, если журнал недоступен
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Отбрасывает записи, которые не удалось сбросить на диск: убирает их из очереди и по возможности обрезает файл,
+     * чтобы они не применились к базе данных ни потоком записи, ни при следующем запуске.
+     */
+    private synchronized void discardUnsynced() {
+        failed = true;
+        int discarded = 0;
+        while (appendedSequence > durableSequence) {
+            pending.pollLast();
+            appendedSequence--;
+            discarded++;
+        }
+        Server.logger.severe("Failed to sync the write-behind journal, " + discarded + " unsynced changes discarded; journal is disabled until restart");
+        try {
+            channel.truncate(durableOffset);
+        } catch (IOException e) {
+            Server.logger.severe("Failed to cut unsynced records off the write-behind journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Переносит в базу данных все накопившиеся изменения. Вызывается перед операциями, которые идут в базу данных напрямую,
+     * чтобы они видели актуальное состояние.
+     *
+     * @return статус выполнения
+     */
+    public ExecutionStatus drain() {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (hasPending()) {
+            syncAppended();
+            if (flushBatch()) {
+                continue;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                return new ExecutionStatus(false, "Не удалось сохранить отложенные изменения в базу данных!");
+            }
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS); // Как и поток записи, не повторяем неудачную попытку сразу
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new ExecutionStatus(false, "Не удалось сохранить отложенные изменения в базу данных!");
+            }
+        }
+        return new ExecutionStatus(true, "Отложенные изменения сохранены.");
+    }
+
+    /**
+     * Сбрасывает на диск все дописанные записи: в базу данных переносятся только они.
+     * При ошибке несброшенные записи уже отброшены, а сброшенные ранее по-прежнему можно перенести.
+     */
+    private void syncAppended() {
+        long last;
+        synchronized (this) {
+            last = appendedSequence;
+        }
+        try {
+            awaitDurable(last);
+        } catch (IOException e) {
+            Server.logger.warning("Only synced changes of the write-behind journal will be flushed: " + e.getMessage());
+        }
+    }
+
+    private synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    private void runWriter() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (pending.isEmpty()) {
+                        wait();
+                    }
+                    long deadline = System.currentTimeMillis() + FLUSH_INTERVAL_MILLIS;
+                    long remaining;
+                    while (pending.size() < BATCH_SIZE && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        wait(remaining); // Копим изменения, чтобы записать их одной транзакцией
+                    }
+                }
+                syncAppended();
+                if (!flushBatch()) {
+                    Thread.sleep(FLUSH_INTERVAL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Переносит в базу данных одну пачку сброшенных на диск изменений и убирает её из очереди.
+     * Когда очередь опустела, файл журнала очищается: всё его содержимое уже есть в базе данных.
+     *
+     * @return true, если пачка записана или записывать было нечего
+     */
+    private boolean flushBatch() {
+        flushLock.lock();
+        try {
+            List<Mutation> batch;
+            synchronized (this) {
+                long durable = durableSequence - (appendedSequence - pending.size()); // Сколько записей в начале очереди на диске
+                int limit = (int) Math.min(BATCH_SIZE, Math.max(0, durable));
+                batch = new ArrayList<>(limit);
+                for (Mutation mutation : pending) {
+                    if (batch.size() == limit) {
+                        break;
+                    }
+                    batch.add(mutation);
+                }
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+            ExecutionStatus status = dbManager.applyJournal(batch);
+            if (!status.isSuccess()) {
+                Server.logger.severe("Failed to flush the write-behind journal: " + status.getMessage());
+                return false;
+            }
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    pending.poll();
+                }
+                if (pending.isEmpty()) {
+                    channel.truncate(0);
+                    channel.force(true); // Иначе после сбоя старые записи могли бы вернуть элементы, удалённые в обход журнала
+                    durableOffset = 0;
+                    truncations++;
+                }
+            }
+            Server.logger.fine("Flushed " + batch.size() + " journaled changes to the database");
+            return true;
+        } catch (IOException | SQLException e) {
+            Server.logger.severe("Failed to flush the write-behind journal: " + e.getMessage());
+            return false;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Применяет к базе данных записи, оставшиеся в журнале после предыдущего запуска.
+     * Применение записей повторяемо, поэтому журнал, частично перенесённый в базу данных, можно применить ещё раз.
+     */
+    private void recover() throws IOException, SQLException {
+        if (!Files.exists(JOURNAL_FILE)) {
+            return;
+        }
+        List<Mutation> mutations = readRecords(ByteBuffer.wrap(Files.readAllBytes(JOURNAL_FILE)));
+        for (int from = 0; from < mutations.size(); from += BATCH_SIZE) {
+            ExecutionStatus status = dbManager.applyJournal(mutations.subList(from, Math.min(from + BATCH_SIZE, mutations.size())));
+            if (!status.isSuccess()) {
+                throw new SQLException(status.getMessage());
+            }
+        }
+        if (!mutations.isEmpty()) {
+            Server.logger.info("Recovered " + mutations.size() + " changes from the write-behind journal");
+        }
+    }
+
+    /**
+     * Читает записи журнала до первой записи, которая не прошла проверку длины, контрольной суммы или декодирования.
+     * Такая запись и всё после неё - хвост, недописанный при сбое (в том числе заполненные нулями блоки файла):
+     * сервер остановился до ответа клиенту, поэтому хвост отбрасывается.
+     *
+     * @param content содержимое файла журнала
+     * @return изменения из целых записей в порядке записи
+     */
+    static List<Mutation> readRecords(ByteBuffer content) {
+        List<Mutation> mutations = new ArrayList<>();
+        while (content.hasRemaining()) {
+            int start = content.position();
+            Mutation mutation = readRecord(content);
+            if (mutation == null) {
+                Server.logger.warning("Discarding " + (content.limit() - start) + " bytes of an incomplete or damaged tail of the write-behind journal");
+                break;
+            }
+            mutations.add(mutation);
+        }
+        return mutations;
+    }
+
+    private static Mutation readRecord(ByteBuffer content) {
+        int start = content.position();
+        if (content.remaining() < Frame.HEADER_SIZE + CHECKSUM_SIZE) {
+            return null;
+        }
+        int length = content.getInt(start);
+        if (length <= 0 || length > content.remaining() - Frame.HEADER_SIZE - CHECKSUM_SIZE) {
+            return null;
+        }
+        int end = start + Frame.HEADER_SIZE + length;
+        CRC32 checksum = new CRC32();
+        checksum.update(content.slice(start, end - start));
+        if ((int) checksum.getValue() != content.getInt(end)) {
+            return null;
+        }
+        try {
+            Mutation mutation = decode(content.slice(start + Frame.HEADER_SIZE, length));
+            content.position(end + CHECKSUM_SIZE);
+            return mutation;
+        } catch (ProtocolException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Кодирует запись журнала: кадр с изменением и контрольная сумма кадра.
+     *
+     * @param mutation изменение
+     * @param sequence номер записи
+     * @return запись, готовая к записи в файл
+     */
+    static ByteBuffer encode(Mutation mutation, long sequence) {
+        Request request = new Request(mutation.kind + " " + mutation.ticketId, mutation.ticket, null);
+        request.setId(sequence);
+        ByteBuffer frame = MessageCodec.encodeRequest(request);
+        CRC32 checksum = new CRC32();
+        checksum.update(frame.duplicate());
+        return ByteBuffer.allocate(frame.remaining() + CHECKSUM_SIZE).put(frame).putInt((int) checksum.getValue()).flip();
+    }
+
+    private static Mutation decode(ByteBuffer payload) throws ProtocolException {
+        Request request = MessageCodec.decodeRequest(payload);
+        String[] command = request.getCommand();
+        try {
+            return new Mutation(Kind.valueOf(command[0]), Long.parseLong(command[1]), request.getTicket());
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException("Повреждённая запись журнала: " + request.getCommandLine());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.lab7.server.utility;
+
+import com.lab7.common.utility.FrameDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Состояние одного подключения клиента: декодер входящих кадров и очередь исходящих.
+ * Кадры ставятся в очередь из любых потоков, а отправляет их только поток селектора по событию OP_WRITE.
+ * Элемент очереди - последовательность кадров: длинный ответ кодируется по частям по мере того, как сокет их принимает.
+ */
+public class ClientConnection {
+    private static final int FRAMES_PER_WRITE = ServerConfig.getInt("net.framesPerWrite", 4); // Новых кадров за одно событие OP_WRITE
+    private final SelectionKey key;
+    private final FrameDecoder decoder;
+    private final Queue<Iterator<ByteBuffer>> outbound = new ConcurrentLinkedQueue<>();
+    private boolean helloReceived; // Доступен только потоку селектора
+    private volatile boolean compressionEnabled;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private ByteBuffer current; // Кадр, который сейчас записывается в сокет; доступен только потоку селектора
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null); // Завершение последнего изменяющего запроса
+    private CompletableFuture<Void> allPrevious = CompletableFuture.completedFuture(null); // Завершение всех принятых запросов
+
+    /**
+     * Конструктор подключения.
+     *
+     * @param key ключ канала клиента в селекторе
+     * @param decoder декодер входящих кадров
+     */
+    public ClientConnection(SelectionKey key, FrameDecoder decoder) {
+        this.key = key;
+        this.decoder = decoder;
+    }
+
+    public SocketChannel getChannel() {
+        return (SocketChannel) key.channel();
+    }
+
+    public FrameDecoder getDecoder() {
+        return decoder;
+    }
+
+    public boolean isHelloReceived() {
+        return helloReceived;
+    }
+
+    /**
+     * Запоминает возможности клиента из его приветствия.
+     *
+     * @param compressionEnabled true, если ответы этому клиенту можно сжимать
+     */
+    public void helloReceived(boolean compressionEnabled) {
+        this.helloReceived = true;
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Снимает канал с селектора и закрывает его. Может вызываться из любого потока; повторные вызовы ничего не делают.
+     *
+     * @return true, если подключение закрыто этим вызовом
+     * @throws IOException если произошла ошибка закрытия канала
+     */
+    public boolean close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        key.cancel();
+        key.channel().close();
+        return true;
+    }
+
+    /**
+     * Определяет, когда можно начать выполнение очередного запроса этого подключения.
+     * Читающие запросы выполняются одновременно друг с другом, но после предыдущего изменяющего запроса;
+     * изменяющий запрос ждёт завершения всех запросов, принятых до него.
+     * Вызывается только потоком селектора в порядке получения запросов.
+     *
+     * @param readOnly true, если запрос не изменяет данные
+     * @param completion завершение выполнения этого запроса
+     * @return будущее, после завершения которого запрос можно выполнять
+     */
+    public CompletableFuture<Void> order(boolean readOnly, CompletableFuture<?> completion) {
+        CompletableFuture<Void> done = completion.handle((result, error) -> null);
+        CompletableFuture<Void> ready;
+        if (readOnly) {
+            ready = lastWrite;
+            allPrevious = CompletableFuture.allOf(allPrevious, done);
+        } else {
+            ready = allPrevious;
+            lastWrite = done;
+            allPrevious = done;
+        }
+        return ready;
+    }
+
+    /**
+     * Ставит кадр в очередь на отправку и будит селектор.
+     *
+     * @param frame закодированный кадр, готовый к записи
+     */
+    public void enqueue(ByteBuffer frame) {
+        enqueue(List.of(frame).iterator());
+    }
+
+    /**
+     * Ставит в очередь последовательность кадров одного ответа и будит селектор.
+     * Следующий кадр запрашивается у итератора только после того, как предыдущий полностью отправлен.
+     *
+     * @param frames итератор закодированных кадров; вызывается только из потока селектора
+     */
+    public void enqueue(Iterator<ByteBuffer> frames) {
+        outbound.offer(frames);
+        key.interestOpsOr(SelectionKey.OP_WRITE);
+        key.selector().wakeup();
+    }
+
+    /**
+     * Записывает в канал кадры из очереди, пока сокет их принимает, но не больше FRAMES_PER_WRITE новых кадров:
+     * части длинного ответа кодируются при выдаче, и реактор не должен надолго задерживать другие подключения.
+     * Когда очередь опустела, снимает интерес к OP_WRITE.
+     *
+     * @return true, если все кадры отправлены
+     * @throws IOException если произошла ошибка записи
+     */
+    public boolean flush() throws IOException {
+        SocketChannel channel = getChannel();
+        int frames = 0;
+        while ((current != null && current.hasRemaining()) || (frames++ < FRAMES_PER_WRITE && (current = nextFrame()) != null)) {
+            channel.write(current);
+            if (current.hasRemaining()) {
+                return false; // Буфер сокета заполнен, продолжим при следующем OP_WRITE
+            }
+        }
+        if (frames > FRAMES_PER_WRITE) {
+            return false; // Интерес к OP_WRITE остаётся: остальные кадры отправим после других подключений реактора
+        }
+        key.interestOpsAnd(~SelectionKey.OP_WRITE);
+        if (!outbound.isEmpty()) { // Кадр мог появиться между проверкой очереди и снятием интереса
+            key.interestOpsOr(SelectionKey.OP_WRITE);
+            return false;
+        }
+        return true;
+    }
+
+    private ByteBuffer nextFrame() {
+        Iterator<ByteBuffer> frames;
+        while ((frames = outbound.peek()) != null) {
+            if (frames.hasNext()) {
+                return frames.next();
+            }
+            outbound.poll();
+        }
+        return null;
+    }
+}
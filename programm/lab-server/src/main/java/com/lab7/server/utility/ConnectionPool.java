@@ -0,0 +1,206 @@
+package com.lab7.server.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный пул соединений с базой данных.
+ * Соединения открываются по мере необходимости, но не больше заданного числа. Соединение, которое долго простаивало,
+ * перед выдачей проверяется и при необходимости открывается заново; соединение, закрытое из-за ошибки, в пул не возвращается.
+ * Метод close() выданного соединения возвращает его в пул.
+ * Пока в потоке идёт транзакция, все запросы этого потока получают её соединение.
+ */
+public class ConnectionPool {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private final String url;
+    private final Properties connectionProperties;
+    private final BlockingQueue<PooledConnection> idle;
+    private final Semaphore permits;
+    private final long validationIntervalMillis;
+    private final long acquireTimeoutMillis;
+    private final ThreadLocal<PooledConnection> transactionConnection = new ThreadLocal<>();
+
+    /**
+     * Конструктор пула.
+     *
+     * @param url адрес базы данных
+     * @param connectionProperties параметры подключения: имя пользователя, пароль и настройки драйвера
+     * @param size наибольшее число открытых соединений
+     * @param validationIntervalMillis после какого простоя соединение проверяется перед выдачей
+     * @param acquireTimeoutMillis сколько ждать свободного соединения
+     */
+    public ConnectionPool(String url, Properties connectionProperties, int size, long validationIntervalMillis, long acquireTimeoutMillis) {
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.permits = new Semaphore(size, true);
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Выдаёт соединение. Внутри транзакции возвращает соединение этой транзакции.
+     *
+     * @return соединение; его нужно закрыть, чтобы вернуть в пул
+     * @throws SQLException если свободное соединение не появилось вовремя или не удалось подключиться к базе данных
+     */
+    public Connection getConnection() throws SQLException {
+        PooledConnection bound = transactionConnection.get();
+        if (bound != null) {
+            return bound.handle(false); // Соединение вернёт в пул тот, кто начал транзакцию
+        }
+        return acquire().handle(true);
+    }
+
+    /**
+     * Начинает транзакцию и привязывает её соединение к текущему потоку.
+     *
+     * @return соединение транзакции
+     * @throws SQLException если не удалось получить соединение
+     */
+    public Connection beginTransaction() throws SQLException {
+        PooledConnection pooled = acquire();
+        try {
+            pooled.connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            release(pooled);
+            throw e;
+        }
+        transactionConnection.set(pooled);
+        return pooled.handle(true);
+    }
+
+    /**
+     * Завершает транзакцию текущего потока и возвращает её соединение в пул.
+     * Транзакция к этому моменту должна быть зафиксирована или отменена.
+     *
+     * @param connection соединение, полученное от {@link #beginTransaction()}
+     * @throws SQLException если не удалось вернуть соединение в пул
+     */
+    public void endTransaction(Connection connection) throws SQLException {
+        transactionConnection.remove();
+        connection.close();
+    }
+
+    private PooledConnection acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Нет свободных соединений с базой данных");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения с базой данных прервано", e);
+        }
+        try {
+            PooledConnection pooled = idle.poll();
+            if (pooled != null && System.currentTimeMillis() - pooled.lastUsed > validationIntervalMillis
+                    && !pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                closeQuietly(pooled.connection); // Сервер мог закрыть простаивающее соединение
+                pooled = null;
+            }
+            return pooled != null ? pooled : new PooledConnection(DriverManager.getConnection(url, connectionProperties));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (pooled.connection.isClosed()) {
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback(); // Незавершённая транзакция не должна достаться следующему потоку
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offer(pooled);
+        } catch (SQLException e) {
+            closeQuietly(pooled.connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {}
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private Connection handle(boolean owner) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this, owner)
+            );
+        }
+    }
+
+    /**
+     * Выданное соединение: close() возвращает соединение в пул, остальные методы передаются настоящему соединению.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final boolean owner;
+        private boolean closed;
+
+        private Handle(PooledConnection pooled, boolean owner) {
+            this.pooled = pooled;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        if (owner) {
+                            release(pooled);
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || pooled.connection.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("Соединение уже возвращено в пул");
+                    }
+                    try {
+                        return method.invoke(pooled.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
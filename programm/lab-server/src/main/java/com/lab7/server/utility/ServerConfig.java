@@ -0,0 +1,77 @@
+package com.lab7.server.utility;
+
+import com.lab7.server.Server;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Настройки сервера из файла server.properties.
+ * Файл необязателен: для отсутствующих параметров используются значения по умолчанию.
+ */
+public final class ServerConfig {
+    private static final String CONFIG_FILE = "server.properties";
+    private static final Properties properties = load();
+
+    private ServerConfig() {
+    }
+
+    private static Properties load() {
+        Properties loaded = new Properties();
+        try (FileInputStream input = new FileInputStream(CONFIG_FILE)) {
+            loaded.load(input);
+            Server.logger.info("Server settings loaded from " + CONFIG_FILE);
+        } catch (FileNotFoundException e) {
+            Server.logger.info(CONFIG_FILE + " not found, default server settings are used");
+        } catch (IOException e) {
+            Server.logger.warning("Failed to load " + CONFIG_FILE + ": " + e.getMessage());
+        }
+        return loaded;
+    }
+
+    /**
+     * Возвращает целочисленный параметр.
+     *
+     * @param key имя параметра
+     * @param defaultValue значение по умолчанию
+     * @return значение параметра
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Server.logger.warning("Invalid value of " + key + ": " + value + ", default " + defaultValue + " is used");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Возвращает логический параметр (true или false).
+     *
+     * @param key имя параметра
+     * @param defaultValue значение по умолчанию
+     * @return значение параметра
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Возвращает строковый параметр.
+     *
+     * @param key имя параметра
+     * @param defaultValue значение по умолчанию
+     * @return значение параметра
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : value.trim();
+    }
+}
@@ -0,0 +1,683 @@
+package com.lab7.server.utility;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketType;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Неизменяемая версия коллекции элементов, упорядоченная по id.
+ * Id выдаются по возрастанию, поэтому порядок по id совпадает с порядком добавления.
+ * Элементы хранятся в сбалансированном по размерам поддеревьев дереве поиска: изменение создаёт новую версию,
+ * копируя только путь от корня до изменённого узла (O(log n)), а остальные узлы общие со старой версией.
+ * Поэтому однажды полученную версию можно читать из любого потока без блокировок, пока писатели публикуют новые.
+ * Вместе с версией хранятся такие же деревья элементов каждого владельца и каждого типа,
+ * поэтому выборка и удаление по владельцу или типу затрагивают только нужные элементы,
+ * и дерево всех элементов по возрастанию цены (при равной цене - по id), которое отвечает на вопросы о наименьшем и наибольшем элементе за O(log n).
+ */
+public final class TicketCollection extends AbstractCollection<Ticket> {
+    private static final int DELTA = 3; // Поддерево может быть больше соседнего не более чем в DELTA раз
+    private static final int RATIO = 2; // Выбор между одинарным и двойным поворотом
+    private static final Comparator<Ticket> ID_ORDER = Comparator.comparingLong(Ticket::getId);
+    private static final Comparator<Ticket> PRICE_ORDER = Comparator.comparing(Ticket::getPrice, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private static final Comparator<Ticket> VALUE_ORDER = PRICE_ORDER.thenComparing(ID_ORDER);
+    private static final TicketCollection EMPTY = new TicketCollection(null, null, Map.of(), Map.of(), 0);
+    private final Node root;
+    private final Node byValue; // Те же элементы в порядке VALUE_ORDER
+    private final Map<String, Node> byOwner;
+    private final Map<TicketType, Node> byType;
+    private final long version;
+
+    private TicketCollection(Node root, Node byValue, Map<String, Node> byOwner, Map<TicketType, Node> byType, long version) {
+        this.root = root;
+        this.byValue = byValue;
+        this.byOwner = byOwner;
+        this.byType = byType;
+        this.version = version;
+    }
+
+    /**
+     * Возвращает пустую коллекцию.
+     *
+     * @return пустая коллекция версии 0
+     */
+    public static TicketCollection empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Строит коллекцию из списка элементов за O(n log n). Элементы сортируются параллельно.
+     *
+     * @param tickets элементы с присвоенными id в любом порядке
+     * @param version номер версии
+     * @return коллекция
+     * @throws IllegalArgumentException если в списке есть элементы с одинаковыми id
+     */
+    public static TicketCollection of(List<Ticket> tickets, long version) {
+        Ticket[] sorted = tickets.toArray(new Ticket[0]);
+        Arrays.parallelSort(sorted, ID_ORDER);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i].getId().equals(sorted[i - 1].getId())) {
+                throw new IllegalArgumentException("Повторяющийся id: " + sorted[i].getId());
+            }
+        }
+        Ticket[] byValue = sorted.clone();
+        Arrays.parallelSort(byValue, VALUE_ORDER);
+        return new TicketCollection(build(sorted, 0, sorted.length), build(byValue, 0, byValue.length),
+                buildIndex(group(Arrays.asList(sorted), new HashMap<>(), Ticket::getUser), new HashMap<>()),
+                buildIndex(group(Arrays.asList(sorted), new EnumMap<>(TicketType.class), Ticket::getType), new EnumMap<>(TicketType.class)), version);
+    }
+
+    /**
+     * Готовит часть коллекции для {@link #merge}: сортирует элементы по id и по цене и раскладывает их по владельцам и типам.
+     * Вызывается в потоке, который собрал элементы порции, поэтому при загрузке индексы порций строятся параллельно.
+     *
+     * @param tickets элементы порции с присвоенными id
+     * @return часть коллекции
+     */
+    public static Fragment fragment(List<Ticket> tickets) {
+        Ticket[] sorted = tickets.toArray(new Ticket[0]);
+        Arrays.sort(sorted, ID_ORDER); // Строки из базы данных уже упорядочены по id, сортировка только проверяет это
+        Ticket[] byValue = sorted.clone();
+        Arrays.sort(byValue, VALUE_ORDER);
+        return new Fragment(sorted, byValue, group(Arrays.asList(sorted), new HashMap<>(), Ticket::getUser),
+                group(Arrays.asList(sorted), new EnumMap<>(TicketType.class), Ticket::getType));
+    }
+
+    /**
+     * Собирает коллекцию из частей. Если части идут по возрастанию id (как порции курсора), упорядоченные по id массивы и группы
+     * просто склеиваются, а по цене сливаются уже отсортированные участки. Деревья всех индексов строятся параллельно.
+     *
+     * @param fragments части коллекции
+     * @param version номер версии
+     * @return коллекция
+     * @throws IllegalArgumentException если в частях есть элементы с одинаковыми id
+     */
+    public static TicketCollection merge(List<Fragment> fragments, long version) {
+        int size = fragments.stream().mapToInt(fragment -> fragment.byId.length).sum();
+        Ticket[] sorted = new Ticket[size];
+        Ticket[] byValue = new Ticket[size];
+        Map<String, List<Ticket>> owners = new HashMap<>();
+        Map<TicketType, List<Ticket>> types = new EnumMap<>(TicketType.class);
+        boolean ordered = true;
+        int position = 0;
+        for (Fragment fragment : fragments) {
+            if (fragment.byId.length == 0) {
+                continue;
+            }
+            ordered &= position == 0 || sorted[position - 1].getId() < fragment.byId[0].getId();
+            System.arraycopy(fragment.byId, 0, sorted, position, fragment.byId.length);
+            System.arraycopy(fragment.byValue, 0, byValue, position, fragment.byValue.length);
+            position += fragment.byId.length;
+            fragment.byOwner.forEach((owner, group) -> owners.computeIfAbsent(owner, k -> new ArrayList<>()).addAll(group));
+            fragment.byType.forEach((type, group) -> types.computeIfAbsent(type, k -> new ArrayList<>()).addAll(group));
+        }
+        if (!ordered) {
+            Arrays.parallelSort(sorted, ID_ORDER);
+            owners.values().forEach(group -> group.sort(ID_ORDER));
+            types.values().forEach(group -> group.sort(ID_ORDER));
+        }
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i].getId().equals(sorted[i - 1].getId())) {
+                throw new IllegalArgumentException("Повторяющийся id: " + sorted[i].getId());
+            }
+        }
+        if (fragments.size() > 1) {
+            Arrays.parallelSort(byValue, VALUE_ORDER); // Сортировка слиянием быстро сливает уже упорядоченные участки
+        }
+        CompletableFuture<Node> values = CompletableFuture.supplyAsync(() -> build(byValue, 0, byValue.length));
+        CompletableFuture<Map<String, Node>> ownerIndex = CompletableFuture.supplyAsync(() -> buildIndex(owners, new HashMap<>()));
+        CompletableFuture<Map<TicketType, Node>> typeIndex = CompletableFuture.supplyAsync(() -> buildIndex(types, new EnumMap<>(TicketType.class)));
+        Node root = build(sorted, 0, sorted.length);
+        return new TicketCollection(root, values.join(), ownerIndex.join(), typeIndex.join(), version);
+    }
+
+    /**
+     * Часть коллекции, подготовленная для слияния: элементы по id и по цене и группы по владельцам и типам.
+     */
+    public static final class Fragment {
+        private final Ticket[] byId;
+        private final Ticket[] byValue;
+        private final Map<String, List<Ticket>> byOwner;
+        private final Map<TicketType, List<Ticket>> byType;
+
+        private Fragment(Ticket[] byId, Ticket[] byValue, Map<String, List<Ticket>> byOwner, Map<TicketType, List<Ticket>> byType) {
+            this.byId = byId;
+            this.byValue = byValue;
+            this.byOwner = byOwner;
+            this.byType = byType;
+        }
+    }
+
+    /**
+     * Возвращает номер версии: каждое изменение увеличивает его на единицу.
+     *
+     * @return номер версии
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает элемент по id за O(log n).
+     *
+     * @param id id элемента
+     * @return элемент или null, если его нет
+     */
+    public Ticket get(Long id) {
+        return find(root, id);
+    }
+
+    private static Ticket find(Node root, long id) {
+        Node node = root;
+        while (node != null) {
+            if (id < node.id) {
+                node = node.left;
+            } else if (id > node.id) {
+                node = node.right;
+            } else {
+                return node.ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает первый элемент коллекции.
+     *
+     * @return элемент с наименьшим id или null, если коллекция пуста
+     */
+    public Ticket first() {
+        return leftmost(root);
+    }
+
+    /**
+     * Возвращает элемент с наименьшей ценой (при равной цене - с наименьшим id) за O(log n).
+     *
+     * @return наименьший элемент или null, если коллекция пуста
+     */
+    public Ticket min() {
+        return leftmost(byValue);
+    }
+
+    /**
+     * Возвращает элемент с наибольшей ценой (при равной цене - с наибольшим id) за O(log n).
+     *
+     * @return наибольший элемент или null, если коллекция пуста
+     */
+    public Ticket max() {
+        if (byValue == null) {
+            return null;
+        }
+        Node node = byValue;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.ticket;
+    }
+
+    /**
+     * Проверяет, меньше ли новый элемент наименьшего элемента коллекции. Для пустой коллекции - true.
+     *
+     * @param ticket элемент, ещё не добавленный в коллекцию
+     * @return true, если элемент после добавления стал бы наименьшим
+     */
+    public boolean isBelowMin(Ticket ticket) {
+        Ticket min = min();
+        return min == null || compareAsNew(ticket, min) < 0;
+    }
+
+    /**
+     * Проверяет, больше ли новый элемент наибольшего элемента коллекции. Для пустой коллекции - true.
+     *
+     * @param ticket элемент, ещё не добавленный в коллекцию
+     * @return true, если элемент после добавления стал бы наибольшим
+     */
+    public boolean isAboveMax(Ticket ticket) {
+        Ticket max = max();
+        return max == null || compareAsNew(ticket, max) > 0;
+    }
+
+    /**
+     * Сравнивает новый элемент с элементом коллекции. Id нового элемента ещё не присвоен, а присвоенный будет больше всех существующих,
+     * поэтому при равной цене новый элемент идёт после элемента коллекции.
+     */
+    private static int compareAsNew(Ticket ticket, Ticket existing) {
+        int comparison = PRICE_ORDER.compare(ticket, existing);
+        return comparison != 0 ? comparison : 1;
+    }
+
+    private static Ticket leftmost(Node root) {
+        if (root == null) {
+            return null;
+        }
+        Node node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.ticket;
+    }
+
+    /**
+     * Возвращает не больше limit элементов с id больше afterId в порядке возрастания id, за O(log n + limit).
+     *
+     * @param afterId id, после которого начинается страница
+     * @param limit наибольшее число элементов
+     * @return элементы страницы
+     */
+    public List<Ticket> page(long afterId, int limit) {
+        List<Ticket> page = new ArrayList<>(Math.min(limit, size()));
+        Iterator<Ticket> iterator = new NodeIterator(root, ticket -> ticket.getId() > afterId);
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * Возвращает элементы с id меньше заданного в порядке возрастания id, за O(log n + k).
+     *
+     * @param id граница, не входящая в результат
+     * @return элементы с меньшим id
+     */
+    public List<Ticket> idsBelow(long id) {
+        return collect(new NodeIterator(root, ticket -> true), ticket -> ticket.getId() < id);
+    }
+
+    /**
+     * Возвращает элементы с ценой больше заданной в порядке возрастания цены, за O(log n + k).
+     *
+     * @param price граница, не входящая в результат
+     * @return элементы с большей ценой
+     */
+    public List<Ticket> pricedAbove(long price) {
+        return collect(new NodeIterator(byValue, ticket -> ticket.getPrice() > price), ticket -> true);
+    }
+
+    /**
+     * Возвращает элементы с ценой меньше заданной в порядке возрастания цены, за O(log n + k).
+     *
+     * @param price граница, не входящая в результат
+     * @return элементы с меньшей ценой
+     */
+    public List<Ticket> pricedBelow(long price) {
+        return collect(new NodeIterator(byValue, ticket -> true), ticket -> ticket.getPrice() < price);
+    }
+
+    private static List<Ticket> collect(Iterator<Ticket> iterator, Predicate<Ticket> within) {
+        List<Ticket> tickets = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Ticket ticket = iterator.next();
+            if (!within.test(ticket)) {
+                break;
+            }
+            tickets.add(ticket);
+        }
+        return tickets;
+    }
+
+    /**
+     * Возвращает элементы владельца в порядке возрастания id. Размер известен сразу, обход идёт только по его элементам.
+     *
+     * @param owner имя владельца
+     * @return элементы владельца
+     */
+    public Collection<Ticket> ownedBy(String owner) {
+        return new Subset(byOwner.get(owner));
+    }
+
+    /**
+     * Возвращает элементы указанного типа в порядке возрастания id.
+     *
+     * @param type тип элемента
+     * @return элементы этого типа
+     */
+    public Collection<Ticket> ofType(TicketType type) {
+        return new Subset(byType.get(type));
+    }
+
+    /**
+     * Возвращает элементы владельца указанного типа. Обходится меньший из двух индексов.
+     *
+     * @param owner имя владельца
+     * @param type тип элемента
+     * @return подходящие элементы в порядке возрастания id
+     */
+    public List<Ticket> ownedByWithType(String owner, TicketType type) {
+        Collection<Ticket> owned = ownedBy(owner);
+        Collection<Ticket> typed = ofType(type);
+        return owned.size() <= typed.size()
+                ? owned.stream().filter(ticket -> ticket.getType() == type).toList()
+                : typed.stream().filter(ticket -> owner.equals(ticket.getUser())).toList();
+    }
+
+    /**
+     * Возвращает версию, в которую добавлен элемент. Элемент с тем же id заменяется.
+     *
+     * @param ticket элемент с присвоенным id
+     * @return новая версия коллекции
+     */
+    public TicketCollection with(Ticket ticket) {
+        return change(List.of(ticket), List.of());
+    }
+
+    /**
+     * Возвращает версию, в которую добавлены все элементы.
+     *
+     * @param tickets элементы с присвоенными id
+     * @return новая версия коллекции
+     */
+    public TicketCollection withAll(List<Ticket> tickets) {
+        return change(tickets, List.of());
+    }
+
+    /**
+     * Возвращает версию без элемента с указанным id.
+     *
+     * @param id id элемента
+     * @return новая версия коллекции
+     */
+    public TicketCollection without(Long id) {
+        return change(List.of(), List.of(id));
+    }
+
+    /**
+     * Возвращает версию без элементов с указанными id, за O(k log n) для k удаляемых элементов.
+     *
+     * @param ids id удаляемых элементов
+     * @return новая версия коллекции
+     */
+    public TicketCollection withoutAll(Collection<Long> ids) {
+        return change(List.of(), ids);
+    }
+
+    /**
+     * Возвращает пустую версию коллекции.
+     *
+     * @return новая версия коллекции
+     */
+    public TicketCollection emptied() {
+        return new TicketCollection(null, null, Map.of(), Map.of(), version + 1);
+    }
+
+    /**
+     * Применяет удаления и добавления к дереву и всем индексам. Индексы копируются один раз на всю пачку изменений.
+     */
+    private TicketCollection change(List<Ticket> added, Collection<Long> removed) {
+        Node updated = root;
+        Node values = byValue;
+        Map<String, Node> owners = new HashMap<>(byOwner);
+        Map<TicketType, Node> types = byType.isEmpty() ? new EnumMap<>(TicketType.class) : new EnumMap<>(byType);
+        for (Long id : removed) {
+            Ticket old = find(updated, id);
+            if (old != null) {
+                updated = delete(updated, old, ID_ORDER);
+                values = delete(values, old, VALUE_ORDER);
+                unindex(owners, old.getUser(), old);
+                unindex(types, old.getType(), old);
+            }
+        }
+        for (Ticket ticket : added) {
+            Ticket old = find(updated, ticket.getId());
+            if (old != null) { // Замена: элемент мог сменить тип и цену
+                values = delete(values, old, VALUE_ORDER);
+                unindex(owners, old.getUser(), old);
+                unindex(types, old.getType(), old);
+            }
+            updated = insert(updated, ticket, ID_ORDER);
+            values = insert(values, ticket, VALUE_ORDER);
+            owners.put(ticket.getUser(), insert(owners.get(ticket.getUser()), ticket, ID_ORDER));
+            types.put(ticket.getType(), insert(types.get(ticket.getType()), ticket, ID_ORDER));
+        }
+        return new TicketCollection(updated, values, Collections.unmodifiableMap(owners), Collections.unmodifiableMap(types), version + 1);
+    }
+
+    private static <K> void unindex(Map<K, Node> index, K key, Ticket ticket) {
+        Node remaining = delete(index.get(key), ticket, ID_ORDER);
+        if (remaining == null) {
+            index.remove(key);
+        } else {
+            index.put(key, remaining);
+        }
+    }
+
+    private static <K> Map<K, List<Ticket>> group(List<Ticket> sorted, Map<K, List<Ticket>> groups, Function<Ticket, K> key) {
+        for (Ticket ticket : sorted) {
+            groups.computeIfAbsent(key.apply(ticket), k -> new ArrayList<>()).add(ticket);
+        }
+        return groups;
+    }
+
+    private static <K> Map<K, Node> buildIndex(Map<K, List<Ticket>> groups, Map<K, Node> index) {
+        groups.forEach((k, group) -> index.put(k, build(group.toArray(new Ticket[0]), 0, group.size())));
+        return Collections.unmodifiableMap(index);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return object instanceof Ticket ticket && get(ticket.getId()) != null;
+    }
+
+    @Override
+    public Iterator<Ticket> iterator() {
+        return new NodeIterator(root, ticket -> true);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Проверяет инварианты всех деревьев коллекции: порядок элементов и баланс по весу. Используется в тестах.
+     *
+     * @return true, если все деревья упорядочены и сбалансированы
+     */
+    boolean satisfiesInvariants() {
+        return isValid(root, ID_ORDER) && isValid(byValue, VALUE_ORDER)
+                && byOwner.values().stream().allMatch(node -> isValid(node, ID_ORDER))
+                && byType.values().stream().allMatch(node -> isValid(node, ID_ORDER));
+    }
+
+    private static boolean isValid(Node root, Comparator<Ticket> order) {
+        Ticket previous = null;
+        for (Iterator<Ticket> iterator = new NodeIterator(root, ticket -> true); iterator.hasNext(); ) {
+            Ticket ticket = iterator.next();
+            if (previous != null && order.compare(previous, ticket) >= 0) {
+                return false;
+            }
+            previous = ticket;
+        }
+        return isBalanced(root);
+    }
+
+    private static boolean isBalanced(Node node) {
+        if (node == null) {
+            return true;
+        }
+        int leftSize = size(node.left);
+        int rightSize = size(node.right);
+        if (leftSize + rightSize > 1 && (leftSize > DELTA * rightSize || rightSize > DELTA * leftSize)) {
+            return false;
+        }
+        return isBalanced(node.left) && isBalanced(node.right);
+    }
+
+    /**
+     * Элементы одного поддерева индекса: только для чтения.
+     */
+    private static final class Subset extends AbstractCollection<Ticket> {
+        private final Node root;
+
+        private Subset(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public Iterator<Ticket> iterator() {
+            return new NodeIterator(root, ticket -> true);
+        }
+
+        @Override
+        public int size() {
+            return TicketCollection.size(root);
+        }
+    }
+
+    private static final class Node {
+        private final long id;
+        private final Ticket ticket;
+        private final Node left;
+        private final Node right;
+        private final int size;
+
+        private Node(Ticket ticket, Node left, Node right) {
+            this.id = ticket.getId();
+            this.ticket = ticket;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * Обход дерева по порядку, начиная с первого элемента, для которого выполняется условие started.
+     * Условие должно быть ложным для начала порядка дерева и истинным для его конца. Хранит только путь от корня - O(log n) памяти.
+     */
+    private static final class NodeIterator implements Iterator<Ticket> {
+        private final Deque<Node> path = new ArrayDeque<>();
+
+        private NodeIterator(Node root, Predicate<Ticket> started) {
+            Node node = root;
+            while (node != null) {
+                if (started.test(node.ticket)) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public Ticket next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = path.pop();
+            for (Node next = node.right; next != null; next = next.left) {
+                path.push(next);
+            }
+            return node.ticket;
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node build(Ticket[] sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node(sorted[middle], build(sorted, from, middle), build(sorted, middle + 1, to));
+    }
+
+    private static Node insert(Node node, Ticket ticket, Comparator<Ticket> order) {
+        if (node == null) {
+            return new Node(ticket, null, null);
+        }
+        int comparison = order.compare(ticket, node.ticket);
+        if (comparison < 0) {
+            return balance(node.ticket, insert(node.left, ticket, order), node.right);
+        }
+        if (comparison > 0) {
+            return balance(node.ticket, node.left, insert(node.right, ticket, order));
+        }
+        return new Node(ticket, node.left, node.right);
+    }
+
+    private static Node delete(Node node, Ticket ticket, Comparator<Ticket> order) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = order.compare(ticket, node.ticket);
+        if (comparison < 0) {
+            return balance(node.ticket, delete(node.left, ticket, order), node.right);
+        }
+        if (comparison > 0) {
+            return balance(node.ticket, node.left, delete(node.right, ticket, order));
+        }
+        return glue(node.left, node.right);
+    }
+
+    private static Node glue(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.size > right.size) {
+            Node max = left;
+            while (max.right != null) {
+                max = max.right;
+            }
+            return balance(max.ticket, deleteMax(left), right);
+        }
+        Node min = right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.ticket, left, deleteMin(right));
+    }
+
+    private static Node deleteMin(Node node) {
+        return node.left == null ? node.right : balance(node.ticket, deleteMin(node.left), node.right);
+    }
+
+    private static Node deleteMax(Node node) {
+        return node.right == null ? node.left : balance(node.ticket, node.left, deleteMax(node.right));
+    }
+
+    private static Node balance(Ticket ticket, Node left, Node right) {
+        int leftSize = size(left);
+        int rightSize = size(right);
+        if (leftSize + rightSize <= 1) {
+            return new Node(ticket, left, right);
+        }
+        if (rightSize > DELTA * leftSize) {
+            return size(right.left) < RATIO * size(right.right)
+                    ? new Node(right.ticket, new Node(ticket, left, right.left), right.right)
+                    : new Node(right.left.ticket, new Node(ticket, left, right.left.left), new Node(right.ticket, right.left.right, right.right));
+        }
+        if (leftSize > DELTA * rightSize) {
+            return size(left.right) < RATIO * size(left.left)
+                    ? new Node(left.ticket, left.left, new Node(ticket, left.right, right))
+                    : new Node(left.right.ticket, new Node(left.ticket, left.left, left.right.left), new Node(ticket, left.right.right, right));
+        }
+        return new Node(ticket, left, right);
+    }
+}
@@ -0,0 +1,87 @@
+package com.lab7.server.utility;
+
+import com.lab7.common.models.Coordinates;
+import com.lab7.common.models.Event;
+import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketBuilder;
+import com.lab7.common.models.TicketType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Разбор файла с элементами коллекции для массового импорта.
+ * Каждая строка файла описывает один элемент; поля разделяются точкой с запятой:
+ * name;x;y;price;description;type;event_name;event_time.
+ * Пустые строки и строки, начинающиеся с #, пропускаются. Строки разбираются параллельно.
+ */
+public final class TicketCsvParser {
+    private static final String SEPARATOR = ";";
+    private static final int FIELDS = 8;
+
+    private TicketCsvParser() {
+    }
+
+    /**
+     * Читает и проверяет все элементы файла.
+     *
+     * @param file файл с элементами
+     * @param owner имя пользователя, которому будут принадлежать элементы
+     * @return элементы в порядке строк файла
+     * @throws IOException если файл не удалось прочитать
+     * @throws IllegalArgumentException если строка файла некорректна; сообщение содержит номер строки
+     */
+    public static List<Ticket> parse(Path file, String owner) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        LocalDateTime creationDate = LocalDateTime.now();
+        Ticket[] tickets = IntStream.range(0, lines.size()).parallel()
+                .mapToObj(i -> parseLine(lines.get(i), i + 1, owner, creationDate))
+                .toArray(Ticket[]::new);
+        return Arrays.stream(tickets).filter(Objects::nonNull).toList();
+    }
+
+    private static Ticket parseLine(String line, int lineNumber, String owner, LocalDateTime creationDate) {
+        if (line.isBlank() || line.startsWith("#")) {
+            return null;
+        }
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != FIELDS) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": ожидалось " + FIELDS + " полей, найдено " + fields.length);
+        }
+        if (fields[3].isBlank()) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": не указана цена");
+        }
+        TicketType type;
+        try {
+            type = TicketType.valueOf(fields[5].trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": неизвестный тип билета " + fields[5].trim());
+        }
+        TicketBuilder builder;
+        try {
+            builder = new TicketBuilder()
+                    .setName(fields[0].trim())
+                    .setCoordinates(new Coordinates(Double.parseDouble(fields[1].trim()), Float.parseFloat(fields[2].trim())))
+                    .setCreationDate(creationDate)
+                    .setPrice(Long.parseLong(fields[3].trim()))
+                    .setDescription(fields[4].trim())
+                    .setType(type)
+                    .setEvent(new Event(fields[6].trim(), fields[7].isBlank() ? null : fields[7].trim()))
+                    .setUser(owner);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": неверный формат числа: " + e.getMessage());
+        }
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": значения полей не проходят проверку");
+        }
+    }
+}
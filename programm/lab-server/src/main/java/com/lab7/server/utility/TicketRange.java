@@ -0,0 +1,98 @@
+package com.lab7.server.utility;
+
+import com.lab7.common.models.Ticket;
+
+import java.util.List;
+
+/**
+ * Диапазон элементов для удаления: все элементы, у которых цена или id строго больше (или строго меньше) границы.
+ * Диапазон выбирается из упорядоченного дерева версии коллекции за O(log n + k) и переводится в условие SQL-запроса.
+ */
+public final class TicketRange {
+    private final Field field;
+    private final boolean greater;
+    private final long bound;
+
+    /**
+     * Поле, по которому задаётся диапазон, и соответствующий ему столбец таблицы tickets.
+     */
+    public enum Field {
+        PRICE("price"),
+        ID("id");
+
+        private final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    /**
+     * Конструктор диапазона.
+     *
+     * @param field поле, по которому задаётся диапазон
+     * @param greater true - элементы со значением больше границы, false - меньше
+     * @param bound граница, не входящая в диапазон
+     */
+    public TicketRange(Field field, boolean greater, long bound) {
+        this.field = field;
+        this.greater = greater;
+        this.bound = bound;
+    }
+
+    /**
+     * Разбирает аргумент команды: цену или флаг --id и id элемента.
+     *
+     * @param argument аргумент, уже проверенный RangeValidator
+     * @param greater true - элементы со значением больше границы, false - меньше
+     * @return диапазон
+     */
+    public static TicketRange parse(String argument, boolean greater) {
+        String[] args = argument.split("\\s+");
+        Field field = args[0].equals("--id") ? Field.ID : Field.PRICE;
+        return new TicketRange(field, greater, Long.parseLong(args[args.length - 1]));
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public boolean isGreater() {
+        return greater;
+    }
+
+    public long getBound() {
+        return bound;
+    }
+
+    /**
+     * Выбирает элементы диапазона из версии коллекции.
+     *
+     * @param collection версия коллекции
+     * @return элементы диапазона
+     */
+    public List<Ticket> select(TicketCollection collection) {
+        if (field == Field.PRICE) {
+            return greater ? collection.pricedAbove(bound) : collection.pricedBelow(bound);
+        }
+        return greater ? collection.page(bound, Integer.MAX_VALUE) : collection.idsBelow(bound);
+    }
+
+    /**
+     * Возвращает условие SQL-запроса с одним параметром - границей диапазона.
+     *
+     * @return условие вида "price > ?"
+     */
+    public String toSqlCondition() {
+        return field.getColumn() + (greater ? " > ?" : " < ?");
+    }
+
+    @Override
+    public String toString() {
+        return field.getColumn() + (greater ? " > " : " < ") + bound;
+    }
+}
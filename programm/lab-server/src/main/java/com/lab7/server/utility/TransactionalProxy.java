@@ -3,6 +3,7 @@ package com.lab7.server.utility;
 import com.lab7.common.utility.ExecutionStatus;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
@@ -12,41 +13,50 @@ import java.sql.Connection;
  */
 public class TransactionalProxy implements InvocationHandler {
     private final Object target;
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public TransactionalProxy(Object target, Connection connection) {
+    public TransactionalProxy(Object target, ConnectionPool pool) {
         this.target = target;
-        this.connection = connection;
+        this.pool = pool;
     }
 
     @SuppressWarnings("unchecked")
-    public static <T> T createProxy(T target, Connection connection) {
+    public static <T> T createProxy(T target, ConnectionPool pool) {
         return (T) Proxy.newProxyInstance(
                 target.getClass().getClassLoader(),
                 target.getClass().getInterfaces(),
-                new TransactionalProxy(target, connection)
+                new TransactionalProxy(target, pool)
         );
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (method.isAnnotationPresent(Transactional.class)) {
+            Connection connection = null;
             try {
-                connection.setAutoCommit(false);
+                connection = pool.beginTransaction(); // Все запросы метода в этом потоке пойдут через это соединение
                 Object result = method.invoke(target, args);
                 connection.commit();
                 return result;
             } catch (Exception e) {
-                connection.rollback();
+                if (connection != null) {
+                    connection.rollback();
+                }
                 if (method.getReturnType().equals(ExecutionStatus.class)) {
                     return new ExecutionStatus(false, "Ошибка транзакции: " + e.getMessage());
                 }
                 throw new RuntimeException("Аннотация @Transactional может использоваться только с методами, возвращающими ExecutionStatus", e);
             } finally {
-                connection.setAutoCommit(true);
+                if (connection != null) {
+                    pool.endTransaction(connection);
+                }
             }
         } else {
-            return method.invoke(target, args);
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause(); // Исключения метода, например SQLException, передаются вызывающему как есть
+            }
         }
     }
 }
\ No newline at end of file
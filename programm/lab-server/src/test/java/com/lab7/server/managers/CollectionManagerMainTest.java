@@ -0,0 +1,63 @@
+package com.lab7.server.managers;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.server.utility.TicketCollection;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lab7.server.utility.TestTickets.ticket;
+import static com.lab7.server.utility.TestTickets.tickets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectionManagerMainTest {
+
+    @Test
+    void keepsSnapshotRowsStillInDatabase() {
+        List<Ticket> snapshot = tickets(1, 2, 3, 5, 7);
+        List<Long> missing = new ArrayList<>();
+
+        List<Ticket> kept = CollectionManagerMain.keepExisting(snapshot, List.of(2L, 3L, 4L, 5L, 8L), missing);
+
+        assertEquals(List.of(2L, 3L, 5L), ids(kept)); // 1 и 7 удалены из базы данных после снимка
+        assertEquals(List.of(4L, 8L), missing);
+    }
+
+    @Test
+    void reportsAllRowsMissingWithoutSnapshotRows() {
+        List<Long> missing = new ArrayList<>();
+
+        assertTrue(CollectionManagerMain.keepExisting(List.of(), List.of(1L, 2L), missing).isEmpty());
+        assertEquals(List.of(1L, 2L), missing);
+    }
+
+    @Test
+    void dropsAllSnapshotRowsOfEmptyDatabase() {
+        List<Long> missing = new ArrayList<>();
+
+        assertTrue(CollectionManagerMain.keepExisting(tickets(1, 2), List.of(), missing).isEmpty());
+        assertTrue(missing.isEmpty());
+    }
+
+    @Test
+    void changedRowsReplaceSnapshotRows() {
+        List<Long> missing = new ArrayList<>();
+        List<Ticket> kept = CollectionManagerMain.keepExisting(tickets(1, 2, 3), List.of(1L, 3L, 4L), missing);
+        Ticket changed = ticket(3, 999L);
+        Ticket added = ticket(4, 400L); // Строка, которой нет в снимке, загружается вместе с изменёнными
+
+        TicketCollection restored = TicketCollection.of(kept, 1).withAll(List.of(changed, added));
+
+        assertEquals(List.of(1L, 3L, 4L), ids(restored));
+        assertEquals(999L, restored.get(3L).getPrice());
+        assertEquals(List.of(4L), missing);
+    }
+
+    private static List<Long> ids(Iterable<Ticket> tickets) {
+        List<Long> ids = new ArrayList<>();
+        tickets.forEach(ticket -> ids.add(ticket.getId()));
+        return ids;
+    }
+}
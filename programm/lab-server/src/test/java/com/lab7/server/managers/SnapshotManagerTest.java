@@ -0,0 +1,70 @@
+package com.lab7.server.managers;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.server.utility.TestTickets;
+import com.lab7.server.utility.TicketCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SnapshotManagerTest {
+    private static final List<Ticket> TICKETS = TestTickets.tickets(1, 2, 5, 9);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWrittenSnapshot() throws IOException {
+        Path file = written();
+
+        SnapshotManager.Snapshot snapshot = SnapshotManager.read(file);
+
+        assertNotNull(snapshot);
+        assertEquals(42, snapshot.getChangeMark());
+        assertEquals(TICKETS.toString(), snapshot.getTickets().toString());
+    }
+
+    @Test
+    void ignoresMissingSnapshot() {
+        assertNull(SnapshotManager.read(directory.resolve("absent.snapshot")));
+    }
+
+    @Test
+    void ignoresSnapshotTruncatedAtEveryCut() throws IOException {
+        byte[] complete = Files.readAllBytes(written());
+        Path truncated = directory.resolve("truncated.snapshot");
+        for (int cut = 0; cut < complete.length; cut++) {
+            Files.write(truncated, Arrays.copyOf(complete, cut));
+
+            assertNull(SnapshotManager.read(truncated), "снимок принят после обрезки до " + cut + " байт из " + complete.length);
+        }
+    }
+
+    @Test
+    void ignoresSnapshotWithBadChecksum() throws IOException {
+        byte[] complete = Files.readAllBytes(written());
+        Path damaged = directory.resolve("damaged.snapshot");
+        for (int position : new int[]{0, 20, complete.length / 2, complete.length - 1}) {
+            byte[] content = complete.clone();
+            content[position] ^= 0x10;
+            Files.write(damaged, content);
+
+            assertNull(SnapshotManager.read(damaged), "снимок принят с испорченным байтом " + position);
+        }
+    }
+
+    private Path written() throws IOException {
+        Path file = directory.resolve("collection.snapshot");
+        SnapshotManager.write(file, TicketCollection.of(TICKETS, 1), 42);
+        return file;
+    }
+}
@@ -0,0 +1,95 @@
+package com.lab7.server.managers;
+
+import com.lab7.server.managers.WriteBehindJournal.Kind;
+import com.lab7.server.managers.WriteBehindJournal.Mutation;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.lab7.server.utility.TestTickets.ticket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindJournalTest {
+    private static final List<Mutation> MUTATIONS = List.of(
+            new Mutation(Kind.ADD, 1, ticket(1, 100L)),
+            new Mutation(Kind.ADD, 2, ticket(2, 200L)),
+            new Mutation(Kind.UPDATE, 1, ticket(1, 150L)),
+            new Mutation(Kind.REMOVE, 2, null));
+
+    @Test
+    void replaysRecordsInOrder() {
+        List<Mutation> replayed = WriteBehindJournal.readRecords(ByteBuffer.wrap(journal(MUTATIONS)));
+
+        assertEquals(MUTATIONS.size(), replayed.size());
+        for (int i = 0; i < MUTATIONS.size(); i++) {
+            assertSameMutation(MUTATIONS.get(i), replayed.get(i));
+        }
+        assertNull(replayed.get(3).getTicket());
+    }
+
+    @Test
+    void readsEmptyJournal() {
+        assertTrue(WriteBehindJournal.readRecords(ByteBuffer.allocate(0)).isEmpty());
+    }
+
+    @Test
+    void dropsTornTailAtEveryCut() {
+        byte[] complete = journal(MUTATIONS.subList(0, 3));
+        byte[] last = journal(MUTATIONS.subList(3, 4));
+        for (int cut = 0; cut < last.length; cut++) {
+            byte[] content = Arrays.copyOf(complete, complete.length + cut);
+            System.arraycopy(last, 0, content, complete.length, cut);
+
+            List<Mutation> replayed = WriteBehindJournal.readRecords(ByteBuffer.wrap(content));
+
+            assertEquals(3, replayed.size(), "обрыв после " + cut + " байт последней записи");
+            assertSameMutation(MUTATIONS.get(2), replayed.get(2));
+        }
+    }
+
+    @Test
+    void dropsZeroFilledTail() {
+        byte[] complete = journal(MUTATIONS);
+        byte[] content = Arrays.copyOf(complete, complete.length + 4096); // Блоки, выделенные файловой системой, но не записанные
+
+        List<Mutation> replayed = WriteBehindJournal.readRecords(ByteBuffer.wrap(content));
+
+        assertEquals(MUTATIONS.size(), replayed.size());
+    }
+
+    @Test
+    void stopsAtRecordWithWrongChecksum() {
+        int firstLength = journal(MUTATIONS.subList(0, 1)).length;
+        byte[] content = journal(MUTATIONS);
+        content[firstLength + 10] ^= 0x01; // Повреждена вторая запись, следующие за ней целы
+
+        List<Mutation> replayed = WriteBehindJournal.readRecords(ByteBuffer.wrap(content));
+
+        assertEquals(1, replayed.size());
+        assertSameMutation(MUTATIONS.get(0), replayed.get(0));
+    }
+
+    private static byte[] journal(List<Mutation> mutations) {
+        ByteBuffer[] records = new ByteBuffer[mutations.size()];
+        int size = 0;
+        for (int i = 0; i < mutations.size(); i++) {
+            records[i] = WriteBehindJournal.encode(mutations.get(i), i + 1);
+            size += records[i].remaining();
+        }
+        ByteBuffer content = ByteBuffer.allocate(size);
+        for (ByteBuffer record : records) {
+            content.put(record);
+        }
+        return content.array();
+    }
+
+    private static void assertSameMutation(Mutation expected, Mutation actual) {
+        assertEquals(expected.getKind(), actual.getKind());
+        assertEquals(expected.getTicketId(), actual.getTicketId());
+        assertEquals(String.valueOf(expected.getTicket()), String.valueOf(actual.getTicket()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.lab7.server.utility;
+
+import com.lab7.common.models.Coordinates;
+import com.lab7.common.models.Event;
+import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketBuilder;
+import com.lab7.common.models.TicketType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * Билеты для тестов модуля. По умолчанию билет принадлежит alice, имеет тип VIP и цену 100 * id.
+ */
+public final class TestTickets {
+    private TestTickets() {
+    }
+
+    /**
+     * Возвращает построитель корректного билета, в котором тест может заменить нужные поля.
+     *
+     * @param id идентификатор билета
+     * @return построитель билета
+     */
+    public static TicketBuilder builder(long id) {
+        return new TicketBuilder().setId(id).setName("ticket " + id).setCoordinates(new Coordinates(1.0, 2f))
+                .setCreationDate(LocalDateTime.of(2024, 1, 1, 0, 0)).setPrice(100 * id).setDescription("d")
+                .setType(TicketType.VIP).setEvent(new Event("event", "time")).setUser("alice");
+    }
+
+    public static Ticket ticket(long id) {
+        return builder(id).build();
+    }
+
+    public static Ticket ticket(long id, long price) {
+        return builder(id).setPrice(price).build();
+    }
+
+    public static List<Ticket> tickets(long... ids) {
+        return LongStream.of(ids).mapToObj(TestTickets::ticket).toList();
+    }
+}
@@ -0,0 +1,202 @@
+package com.lab7.server.utility;
+
+import com.lab7.common.models.Ticket;
+import com.lab7.common.models.TicketType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketCollectionTest {
+    private static final Comparator<Ticket> BY_VALUE = Comparator.comparing(Ticket::getPrice).thenComparing(Ticket::getId);
+    private static final int OWNERS = 7;
+
+    @Test
+    void randomChangesMatchReferenceMap() {
+        Random random = new Random(2);
+        TreeMap<Long, Ticket> reference = new TreeMap<>();
+        TicketCollection collection = TicketCollection.empty();
+        for (int step = 0; step < 20000; step++) {
+            int operation = random.nextInt(10);
+            long id = 1 + random.nextInt(3000);
+            if (operation < 5) {
+                Ticket ticket = ticket(id, random);
+                reference.put(id, ticket);
+                collection = collection.with(ticket);
+            } else if (operation < 9) {
+                reference.remove(id);
+                collection = collection.without(id);
+            } else {
+                List<Long> owned = collection.ownedBy(owner(random.nextInt(OWNERS))).stream().map(Ticket::getId).toList();
+                owned.forEach(reference::remove);
+                collection = collection.withoutAll(owned);
+            }
+            if (step % 500 == 0) {
+                assertMatches(reference, collection);
+            }
+        }
+        assertMatches(reference, collection);
+    }
+
+    @Test
+    void ascendingAndDescendingInsertsStayBalanced() {
+        TicketCollection ascending = TicketCollection.empty();
+        TicketCollection descending = TicketCollection.empty();
+        Random random = new Random(3);
+        for (long id = 1; id <= 5000; id++) {
+            ascending = ascending.with(ticket(id, random));
+            descending = descending.with(ticket(5001 - id, random));
+        }
+
+        assertTrue(ascending.satisfiesInvariants());
+        assertTrue(descending.satisfiesInvariants());
+        for (long id = 1; id <= 4900; id++) {
+            ascending = ascending.without(id);
+        }
+        assertTrue(ascending.satisfiesInvariants());
+        assertEquals(100, ascending.size());
+        assertEquals(4901L, ascending.first().getId());
+    }
+
+    @Test
+    void earlierVersionsStayUnchanged() {
+        Random random = new Random(4);
+        TicketCollection first = TicketCollection.of(tickets(1, 100, random), 1);
+        TicketCollection second = first.without(50L).with(ticket(200, random));
+
+        assertEquals(100, first.size());
+        assertTrue(first.contains(first.get(50L)));
+        assertNull(first.get(200L));
+        assertEquals(100, second.size());
+        assertNull(second.get(50L));
+        assertEquals(1, first.getVersion());
+        assertEquals(3, second.getVersion());
+    }
+
+    @Test
+    void replacedTicketMovesInValueOrderAndIndexes() {
+        Ticket cheap = build(1, 10L, TicketType.VIP, "alice");
+        Ticket other = build(2, 20L, TicketType.USUAL, "bob");
+        TicketCollection collection = TicketCollection.of(List.of(cheap, other), 0);
+
+        TicketCollection updated = collection.with(build(1, 30L, TicketType.CHEAP, "alice"));
+
+        assertSame(other, updated.min());
+        assertEquals(1L, updated.max().getId());
+        assertTrue(updated.ofType(TicketType.VIP).isEmpty());
+        assertEquals(1, updated.ofType(TicketType.CHEAP).size());
+        assertEquals(2, updated.size());
+        assertTrue(updated.satisfiesInvariants());
+    }
+
+    @Test
+    void comparesNewTicketsAfterExistingOnEqualPrice() {
+        TicketCollection collection = TicketCollection.of(List.of(build(1, 10L, TicketType.VIP, "alice"), build(2, 20L, TicketType.VIP, "alice")), 0);
+
+        assertFalse(collection.isBelowMin(build(3, 10L, TicketType.VIP, "bob")));
+        assertTrue(collection.isBelowMin(build(3, 9L, TicketType.VIP, "bob")));
+        assertTrue(collection.isAboveMax(build(3, 20L, TicketType.VIP, "bob")));
+        assertFalse(collection.isAboveMax(build(3, 19L, TicketType.VIP, "bob")));
+        assertTrue(TicketCollection.empty().isBelowMin(build(3, 1L, TicketType.VIP, "bob")));
+    }
+
+    @Test
+    void pagesInIdOrder() {
+        TicketCollection collection = TicketCollection.of(tickets(1, 250, new Random(5)), 0);
+
+        List<Ticket> page = collection.page(100, 20);
+
+        assertEquals(LongStream.rangeClosed(101, 120).boxed().toList(), page.stream().map(Ticket::getId).toList());
+        assertTrue(collection.page(250, 20).isEmpty());
+    }
+
+    @Test
+    void mergeMatchesOf() {
+        Random random = new Random(6);
+        List<Ticket> all = tickets(1, 3000, random);
+        List<TicketCollection.Fragment> ordered = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += 700) {
+            ordered.add(TicketCollection.fragment(all.subList(from, Math.min(all.size(), from + 700))));
+        }
+        List<TicketCollection.Fragment> shuffled = new ArrayList<>(ordered);
+        Collections.shuffle(shuffled, random);
+        TreeMap<Long, Ticket> reference = new TreeMap<>();
+        all.forEach(ticket -> reference.put(ticket.getId(), ticket));
+
+        TicketCollection fromOrdered = TicketCollection.merge(ordered, 9);
+        TicketCollection fromShuffled = TicketCollection.merge(shuffled, 9);
+
+        assertMatches(reference, fromOrdered);
+        assertMatches(reference, fromShuffled);
+        assertMatches(reference, TicketCollection.of(all, 9));
+        assertEquals(9, fromShuffled.getVersion());
+    }
+
+    @Test
+    void mergeRejectsDuplicateIds() {
+        Random random = new Random(7);
+        List<TicketCollection.Fragment> fragments = List.of(
+                TicketCollection.fragment(tickets(1, 10, random)),
+                TicketCollection.fragment(tickets(10, 20, random)));
+
+        assertThrows(IllegalArgumentException.class, () -> TicketCollection.merge(fragments, 0));
+    }
+
+    private static void assertMatches(TreeMap<Long, Ticket> reference, TicketCollection collection) {
+        assertTrue(collection.satisfiesInvariants());
+        assertEquals(reference.size(), collection.size());
+        assertEquals(new ArrayList<>(reference.keySet()), collection.stream().map(Ticket::getId).toList());
+        assertSame(reference.values().stream().min(BY_VALUE).orElse(null), collection.min());
+        assertSame(reference.values().stream().max(BY_VALUE).orElse(null), collection.max());
+        for (int owner = 0; owner < OWNERS; owner++) {
+            String user = owner(owner);
+            assertEquals(ids(reference, ticket -> ticket.getUser().equals(user)), collection.ownedBy(user).stream().map(Ticket::getId).toList());
+            for (TicketType type : TicketType.values()) {
+                assertEquals(ids(reference, ticket -> ticket.getUser().equals(user) && ticket.getType() == type),
+                        collection.ownedByWithType(user, type).stream().map(Ticket::getId).toList());
+            }
+        }
+        for (TicketType type : TicketType.values()) {
+            assertEquals(ids(reference, ticket -> ticket.getType() == type), collection.ofType(type).stream().map(Ticket::getId).toList());
+        }
+        reference.forEach((id, ticket) -> assertSame(ticket, collection.get(id)));
+    }
+
+    private static List<Long> ids(TreeMap<Long, Ticket> reference, Predicate<Ticket> filter) {
+        return reference.values().stream().filter(filter).map(Ticket::getId).toList();
+    }
+
+    private static List<Ticket> tickets(long from, long to, Random random) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            tickets.add(ticket(id, random));
+        }
+        return tickets;
+    }
+
+    private static Ticket ticket(long id, Random random) {
+        int value = random.nextInt(100);
+        return build(id, 1L + value, TicketType.values()[value % TicketType.values().length], owner(value % OWNERS));
+    }
+
+    private static String owner(int index) {
+        return "user" + index;
+    }
+
+    private static Ticket build(long id, long price, TicketType type, String user) {
+        return TestTickets.builder(id).setPrice(price).setType(type).setUser(user).build();
+    }
+}